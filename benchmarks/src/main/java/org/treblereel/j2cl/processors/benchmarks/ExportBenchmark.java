@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@code GWT3Export} of a class at the bottom of a deep hierarchy, so the export model is built
+ * from all inherited methods and fields.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExportBenchmark {
+
+  private static final String PKG = "org.treblereel.j2cl.benchmarks";
+
+  @Param({"1", "10", "50"})
+  public int depth;
+
+  @Param({"10", "100"})
+  public int width;
+
+  private Javac javac;
+
+  @Setup
+  public void setup() {
+    javac = new Javac();
+    for (int level = 0; level < depth; level++) {
+      StringBuilder clazz = new StringBuilder();
+      clazz.append("package ").append(PKG).append(";\n");
+      if (level == depth - 1) {
+        clazz
+            .append("@org.treblereel.j2cl.processors.annotations.GWT3Export\n")
+            .append("public class Level")
+            .append(level);
+      } else {
+        clazz.append("public class Level").append(level);
+      }
+      if (level > 0) {
+        clazz.append(" extends Level").append(level - 1);
+      }
+      clazz.append(" {\n");
+      for (int i = 0; i < width; i++) {
+        String name = "l" + level + "m" + i;
+        clazz.append("  public String ").append(name).append("f;\n");
+        clazz
+            .append("  public String ")
+            .append(name)
+            .append("(String value, double number) {\n")
+            .append("    return value + number;\n")
+            .append("  }\n");
+      }
+      clazz.append("}\n");
+      javac.source(PKG + ".Level" + level, clazz.toString());
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    javac.close();
+  }
+
+  @Benchmark
+  public void generate() {
+    javac.compile();
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.benchmarks;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+import javax.imageio.ImageIO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * An {@code ImageResource} bundle, dominated by reading the dimensions of the images and encoding
+ * them. Every method points to its own copy of the image, so nothing is shared between them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImageResourceBenchmark {
+
+  private static final String PKG = "org.treblereel.j2cl.benchmarks";
+
+  @Param({"16", "1024", "4096"})
+  public int size;
+
+  @Param({"10"})
+  public int images;
+
+  private Javac javac;
+
+  @Setup
+  public void setup() {
+    javac = new Javac();
+    byte[] png = png(size);
+    StringBuilder bundle = new StringBuilder();
+    bundle
+        .append("package ")
+        .append(PKG)
+        .append(";\n")
+        .append("import org.treblereel.j2cl.processors.annotations.GWT3Resource;\n")
+        .append("import org.treblereel.j2cl.processors.common.resources.*;\n")
+        .append("@GWT3Resource\n")
+        .append("public interface Images extends ClientBundle {\n");
+    for (int i = 0; i < images; i++) {
+      javac.resource(PKG.replace('.', '/') + "/image" + i + ".png", png);
+      bundle.append("  @Source(\"image").append(i).append(".png\")\n");
+      bundle.append("  ImageResource image").append(i).append("();\n");
+    }
+    bundle.append("}\n");
+    javac.source(PKG + ".Images", bundle.toString());
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    javac.close();
+  }
+
+  @Benchmark
+  public void generate() {
+    javac.compile();
+  }
+
+  private static byte[] png(int size) {
+    BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D graphics = image.createGraphics();
+    for (int i = 0; i < size; i += 8) {
+      graphics.setColor(new Color(i * 31 % 256, i * 17 % 256, i * 7 % 256));
+      graphics.fillRect(i, 0, 8, size);
+    }
+    graphics.dispose();
+    try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+      ImageIO.write(image, "png", out);
+      return out.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
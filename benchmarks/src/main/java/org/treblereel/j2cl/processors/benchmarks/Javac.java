@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.benchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.treblereel.j2cl.processors.GWT3Processor;
+
+/**
+ * Runs javac inside the benchmark JVM with the GWT3 processor only, so a benchmark measures what
+ * the processor costs in a real compilation. Sources and resources are laid out in a work folder,
+ * because resources and translation bundles are looked up on the source path, and only annotation
+ * processing runs ({@code -proc:only}).
+ */
+final class Javac implements AutoCloseable {
+
+  private final Path workDir;
+  private final Path src;
+  private final List<Path> sources = new ArrayList<>();
+
+  Javac() {
+    try {
+      workDir = Files.createTempDirectory("gwt3-benchmark");
+      src = Files.createDirectories(workDir.resolve("src"));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  Javac source(String className, String source) {
+    Path file = resource(className.replace('.', '/') + ".java", source);
+    sources.add(file);
+    return this;
+  }
+
+  Javac resource(String path, byte[] content) {
+    try {
+      Path file = src.resolve(path);
+      Files.createDirectories(file.getParent());
+      Files.write(file, content);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return this;
+  }
+
+  private Path resource(String path, String content) {
+    resource(path, content.getBytes(StandardCharsets.UTF_8));
+    return src.resolve(path);
+  }
+
+  /** Runs annotation processing, the resource cache is disabled unless enabled by the options. */
+  void compile(String... options) {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    try (StandardJavaFileManager fileManager =
+        compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+      Path out = Files.createDirectories(workDir.resolve("out"));
+      Path generated = Files.createDirectories(workDir.resolve("generated"));
+      List<String> args = new ArrayList<>();
+      args.add("-proc:only");
+      args.add("-Agwt3.cache=false");
+      args.addAll(Arrays.asList(options));
+      args.addAll(
+          Arrays.asList(
+              "-encoding",
+              "UTF-8",
+              "-classpath",
+              System.getProperty("java.class.path"),
+              "-sourcepath",
+              src.toString(),
+              "-s",
+              generated.toString(),
+              "-d",
+              out.toString()));
+      JavaCompiler.CompilationTask task =
+          compiler.getTask(
+              null,
+              fileManager,
+              diagnostics,
+              args,
+              null,
+              fileManager.getJavaFileObjectsFromPaths(sources));
+      task.setProcessors(Collections.singletonList(new GWT3Processor()));
+      if (!task.call()) {
+        throw new IllegalStateException(
+            diagnostics.getDiagnostics().stream()
+                .filter(d -> d.getKind() == Diagnostic.Kind.ERROR)
+                .map(Object::toString)
+                .collect(Collectors.joining(System.lineSeparator())));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    Files.walkFileTree(
+        workDir,
+        new SimpleFileVisitor<>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+              throws IOException {
+            Files.delete(file);
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+            Files.delete(dir);
+            return FileVisitResult.CONTINUE;
+          }
+        });
+  }
+}
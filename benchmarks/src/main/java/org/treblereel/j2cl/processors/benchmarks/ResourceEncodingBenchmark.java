@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.treblereel.j2cl.processors.generator.resources.AbstractResourceGenerator;
+
+/**
+ * Reading, encoding and writing of a single {@code TextResource} or {@code DataResource} of the
+ * given size, plus string escaping on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ResourceEncodingBenchmark {
+
+  private static final String PKG = "org.treblereel.j2cl.benchmarks";
+
+  @Param({"1024", "1048576", "52428800"})
+  public int size;
+
+  @Param({"TextResource", "DataResource"})
+  public String type;
+
+  private String text;
+
+  private Javac javac;
+
+  @Setup
+  public void setup() {
+    text = text(size);
+    byte[] content =
+        type.equals("TextResource") ? text.getBytes(StandardCharsets.UTF_8) : bytes(size);
+    javac =
+        new Javac()
+            .resource(PKG.replace('.', '/') + "/resource.bin", content)
+            .source(
+                PKG + ".Bundle",
+                "package "
+                    + PKG
+                    + ";\n"
+                    + "import org.treblereel.j2cl.processors.annotations.GWT3Resource;\n"
+                    + "import org.treblereel.j2cl.processors.common.resources.*;\n"
+                    + "@GWT3Resource\n"
+                    + "public interface Bundle extends ClientBundle {\n"
+                    + "  @Source(\"resource.bin\")\n"
+                    + "  "
+                    + type
+                    + " resource();\n"
+                    + "}\n");
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    javac.close();
+  }
+
+  @Benchmark
+  public void generate() {
+    javac.compile();
+  }
+
+  @Benchmark
+  public String escape() {
+    return AbstractResourceGenerator.escape(text);
+  }
+
+  /** Text with line breaks, quotes and non ascii chars, so escaping has something to do. */
+  static String text(int size) {
+    String line = "\tThe \"quick\" brown fox jumps over the lazy dog, été \\ café\n";
+    StringBuilder sb = new StringBuilder(size);
+    while (sb.length() < size) {
+      sb.append(line, 0, Math.min(line.length(), size - sb.length()));
+    }
+    return sb.toString();
+  }
+
+  static byte[] bytes(int size) {
+    byte[] bytes = new byte[size];
+    new Random(42).nextBytes(bytes);
+    return bytes;
+  }
+}
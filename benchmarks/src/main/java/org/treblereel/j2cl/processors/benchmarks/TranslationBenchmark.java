@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** A {@code TranslationBundle} with many keys, translated to many locales. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TranslationBenchmark {
+
+  private static final String PKG = "org.treblereel.j2cl.benchmarks";
+
+  private static final String[] LOCALES = {
+    "en", "fr", "de", "es", "it", "pt", "nl", "sv", "da", "fi", "nb", "pl", "cs", "hu", "ro", "ru",
+    "uk", "ja", "ko", "zh"
+  };
+
+  @Param({"1000", "10000"})
+  public int keys;
+
+  @Param({"20"})
+  public int locales;
+
+  private Javac javac;
+
+  @Setup
+  public void setup() {
+    javac = new Javac();
+    StringBuilder bundle = new StringBuilder();
+    bundle
+        .append("package ")
+        .append(PKG)
+        .append(";\n")
+        .append("import org.treblereel.j2cl.processors.annotations.TranslationBundle;\n")
+        .append("import org.treblereel.j2cl.processors.annotations.TranslationKey;\n")
+        .append("@TranslationBundle\n")
+        .append("public interface Messages {\n");
+    for (int i = 0; i < keys; i++) {
+      bundle
+          .append("  @TranslationKey(defaultValue = \"Message number ")
+          .append(i)
+          .append(" for {$name}\")\n")
+          .append("  String message")
+          .append(i)
+          .append("(String name);\n");
+    }
+    bundle.append("}\n");
+    javac.source(PKG + ".Messages", bundle.toString());
+
+    for (int l = 0; l < locales; l++) {
+      String locale = LOCALES[l % LOCALES.length] + (l < LOCALES.length ? "" : "_" + l);
+      StringBuilder properties = new StringBuilder();
+      for (int i = 0; i < keys; i++) {
+        properties
+            .append("message")
+            .append(i)
+            .append('=')
+            .append(locale)
+            .append(" message ")
+            .append(i)
+            .append(" for {$name}\n");
+      }
+      javac.resource(
+          PKG.replace('.', '/') + "/Messages_" + locale + ".properties",
+          properties.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    javac.close();
+  }
+
+  @Benchmark
+  public void generate() {
+    javac.compile();
+  }
+}
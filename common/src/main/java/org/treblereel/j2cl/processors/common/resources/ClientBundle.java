@@ -18,6 +18,7 @@ package org.treblereel.j2cl.processors.common.resources;
 
 import java.lang.annotation.Documented;
 import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
@@ -41,9 +42,39 @@ public interface ClientBundle {
     String[] value();
   }
 
+  /**
+   * Packs the {@link ImageResource}s of the bundle into one image, a sprite, so the browser decodes
+   * a single data url instead of one per image. Each image is a region of the sprite at {@link
+   * ImageResource#getLeft()} and {@link ImageResource#getTop()}. JPEGs and animated images aren't
+   * packed.
+   */
+  @Documented
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target(ElementType.TYPE)
+  @interface Sprite {}
+
+  /**
+   * Writes the resource of a {@link DataResource} or an {@link ImageResource} to the class output,
+   * next to the bundle, instead of embedding it. The file is named after the hash of its content,
+   * {@link DataResource#asString()} and {@link ImageResource#getSrc()} return its url relative to
+   * the class output. Bigger resources are externalized by the {@code gwt3.resources.externalize}
+   * option as well.
+   */
   @Documented
   @Retention(RetentionPolicy.RUNTIME)
   @Target(ElementType.METHOD)
+  @interface Externalize {}
+
+  /**
+   * Copies a resource from a Maven artifact to the class output. On a method, {@link #path()} is
+   * the resource of the {@link ResourcePrototype}. On a bundle type, {@link #path()} may be a glob
+   * such as {@code META-INF/resources/webjars/foo/**}, every matching entry is copied to {@link
+   * #copyTo()}, keeping its path relative to the part of the glob before the first wildcard.
+   */
+  @Documented
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target({ElementType.METHOD, ElementType.TYPE})
+  @Repeatable(MavenArtifactSources.class)
   @interface MavenArtifactSource {
     String repositoryId() default "central";
 
@@ -63,4 +94,12 @@ public interface ClientBundle {
 
     boolean unzip() default false;
   }
+
+  /** Container of repeated {@link MavenArtifactSource} annotations on a bundle type. */
+  @Documented
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target(ElementType.TYPE)
+  @interface MavenArtifactSources {
+    MavenArtifactSource[] value();
+  }
 }
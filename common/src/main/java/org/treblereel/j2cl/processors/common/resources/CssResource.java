@@ -0,0 +1,67 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.common.resources;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import org.treblereel.j2cl.processors.common.resources.ResourcePrototype.DefaultExtensions;
+
+/**
+ * A stylesheet, minified when the bundle is generated. Small resources referenced by {@code url()},
+ * e.g. images, are embedded as data urls.
+ *
+ * <p>Extend it with no-argument methods that return a {@code String} to access the class names of
+ * the stylesheet, the method name is the class name unless it's set by {@link ClassName}. With
+ * {@link CssOptions#obfuscate()} the classes that have a method are renamed to short names, the
+ * other classes of the stylesheet are left alone.
+ */
+@DefaultExtensions(value = {".css"})
+public interface CssResource extends ResourcePrototype {
+
+  String getText();
+
+  /**
+   * Injects the stylesheet into the document, once.
+   *
+   * @return true if the stylesheet was injected by this call
+   */
+  boolean ensureInjected();
+
+  /** The class name of an accessor method, for class names that aren't Java identifiers. */
+  @Documented
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target(ElementType.METHOD)
+  @interface ClassName {
+    String value();
+  }
+
+  /** Options of a stylesheet, set on the method of the bundle. */
+  @Documented
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target(ElementType.METHOD)
+  @interface CssOptions {
+
+    /** Renames the classes that have an accessor method to short names. */
+    boolean obfuscate() default false;
+
+    /** Resources referenced by {@code url()} of up to that many bytes are embedded. */
+    int maxInlineSize() default 4096;
+  }
+}
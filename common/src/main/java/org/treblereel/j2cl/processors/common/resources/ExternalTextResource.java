@@ -0,0 +1,37 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.common.resources;
+
+import elemental2.promise.Promise;
+import org.treblereel.j2cl.processors.common.resources.ResourcePrototype.DefaultExtensions;
+
+/**
+ * A text resource that isn't embedded. It's written to the class output, next to the bundle, and
+ * fetched the first time its text is requested.
+ */
+@DefaultExtensions(value = {".txt"})
+public interface ExternalTextResource extends ResourcePrototype {
+
+  /** The url of the resource, relative to the class output. */
+  String getUrl();
+
+  /**
+   * Fetches the text. Concurrent calls share one request and the text is kept once it's loaded, a
+   * failed request is retried by the next call.
+   */
+  Promise<String> getText();
+}
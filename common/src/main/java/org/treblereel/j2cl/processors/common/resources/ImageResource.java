@@ -16,6 +16,8 @@
 
 package org.treblereel.j2cl.processors.common.resources;
 
+import elemental2.dom.BaseRenderingContext2D;
+import elemental2.dom.HTMLElement;
 import elemental2.dom.Image;
 import java.lang.annotation.Documented;
 import java.lang.annotation.ElementType;
@@ -31,14 +33,32 @@ public interface ImageResource extends ResourcePrototype {
   /** Returns the height of the image. */
   int getHeight();
 
-  /** Returns the Image */
+  /** Returns the Image, clipped to its region if the image is part of a sprite. */
   Image getImage();
 
   /** Returns the width of the image. */
   int getWidth();
 
+  /** Returns the horizontal offset of the image in {@link #getSrc()}, 0 unless it's a sprite. */
+  int getLeft();
+
+  /** Returns the vertical offset of the image in {@link #getSrc()}, 0 unless it's a sprite. */
+  int getTop();
+
   String getSrc();
 
+  /**
+   * Shows the image as the background of the element, positioned at its offset, and sizes the
+   * element to the image.
+   */
+  void applyTo(HTMLElement element);
+
+  /**
+   * Draws the region of the image at the given position. Nothing is drawn until the image is
+   * loaded, which is usually immediate for data urls but not guaranteed.
+   */
+  void drawTo(BaseRenderingContext2D context, double x, double y);
+
   /** Specifies additional options to control how an image is bundled. */
   @Documented
   @Retention(RetentionPolicy.RUNTIME)
@@ -58,5 +78,12 @@ public interface ImageResource extends ResourcePrototype {
      * </code> are set, the aspect ratio of the image will be maintained.
      */
     int width() default -1;
+
+    /**
+     * Set to a value from 0 to 100 to re-encode a JPEG image at that quality, the smaller of the
+     * original and the re-encoded image is embedded. Overrides the <code>gwt3.image.jpegQuality
+     * </code> processor option.
+     */
+    int jpegQuality() default -1;
   }
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.common.resources;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The registered bundles, by the qualified name of the bundle interface. Registration is opt-in, a
+ * generated bundle is registered by calling the static {@code register()} of its implementation,
+ * which doesn't create any of its resources, a resource is created when it's looked up. Bundles
+ * nobody registers keep their lookup unreachable, so the compiler can prune their unused resources.
+ */
+public final class ResourceRegistry {
+
+  private static final Map<String, Bundle> bundles = new LinkedHashMap<>();
+
+  private ResourceRegistry() {}
+
+  public static void register(
+      String bundle, String[] resourceNames, Function<String, ResourcePrototype> lookup) {
+    bundles.put(bundle, new Bundle(resourceNames, lookup));
+  }
+
+  /** Returns the qualified names of the registered bundles. */
+  public static Set<String> getBundles() {
+    return Collections.unmodifiableSet(bundles.keySet());
+  }
+
+  /** Returns the names of the resources of the bundle, none if it isn't registered. */
+  public static String[] getResourceNames(String bundle) {
+    Bundle registered = bundles.get(bundle);
+    return registered != null ? registered.resourceNames.clone() : new String[0];
+  }
+
+  /** Returns the resource of the bundle, or null if there is no such bundle or resource. */
+  public static ResourcePrototype getResource(String bundle, String name) {
+    Bundle registered = bundles.get(bundle);
+    return registered != null ? registered.lookup.apply(name) : null;
+  }
+
+  private static final class Bundle {
+
+    private final String[] resourceNames;
+    private final Function<String, ResourcePrototype> lookup;
+
+    private Bundle(String[] resourceNames, Function<String, ResourcePrototype> lookup) {
+      this.resourceNames = resourceNames;
+      this.lookup = lookup;
+    }
+  }
+}
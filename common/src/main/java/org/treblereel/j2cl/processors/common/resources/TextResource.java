@@ -15,6 +15,11 @@
  */
 package org.treblereel.j2cl.processors.common.resources;
 
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
 import org.treblereel.j2cl.processors.common.resources.ResourcePrototype.DefaultExtensions;
 
 /** A resource that contains text that should be incorporated into the compiled output. */
@@ -25,4 +30,22 @@ public interface TextResource extends ResourcePrototype {
   void insureInjectedAsScript();
 
   void insureInjectedAsStyle();
+
+  /**
+   * Minifies a JavaScript resource with the Closure Compiler when the bundle is generated. The
+   * script isn't transpiled, and no {@code "use strict"} is added to it.
+   */
+  @Documented
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target(ElementType.METHOD)
+  @interface Minify {
+    Level value() default Level.SIMPLE;
+
+    enum Level {
+      /** Removes comments and whitespace. */
+      WHITESPACE_ONLY,
+      /** Also renames local variables and simplifies expressions. */
+      SIMPLE
+    }
+  }
 }
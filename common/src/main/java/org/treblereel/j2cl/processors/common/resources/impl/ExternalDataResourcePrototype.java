@@ -0,0 +1,40 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.common.resources.impl;
+
+import elemental2.core.ArrayBuffer;
+import elemental2.dom.Response;
+import elemental2.promise.Promise;
+import org.treblereel.j2cl.processors.common.resources.ExternalDataResource;
+
+public class ExternalDataResourcePrototype extends ExternalResourcePrototype<ArrayBuffer>
+    implements ExternalDataResource {
+
+  public ExternalDataResourcePrototype(String name, String url) {
+    super(name, url);
+  }
+
+  @Override
+  public Promise<ArrayBuffer> getData() {
+    return fetch();
+  }
+
+  @Override
+  Promise<ArrayBuffer> read(Response response) {
+    return response.arrayBuffer();
+  }
+}
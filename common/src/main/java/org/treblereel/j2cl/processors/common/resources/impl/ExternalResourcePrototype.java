@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.common.resources.impl;
+
+import elemental2.dom.DomGlobal;
+import elemental2.dom.Response;
+import elemental2.promise.Promise;
+
+/** Fetches the content of an external resource once, and keeps it. */
+abstract class ExternalResourcePrototype<T> {
+
+  private final String name;
+  private final String url;
+
+  private Promise<T> content;
+
+  ExternalResourcePrototype(String name, String url) {
+    this.name = name;
+    this.url = url;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  Promise<T> fetch() {
+    if (content == null) {
+      Promise<T> request =
+          DomGlobal.fetch(url)
+              .then(
+                  response ->
+                      response.ok
+                          ? read(response)
+                          : Promise.reject(
+                              "Unable to fetch "
+                                  + url
+                                  + ": "
+                                  + response.status
+                                  + " "
+                                  + response.statusText));
+      request.catch_(
+          error -> {
+            // the next call tries again
+            if (content == request) {
+              content = null;
+            }
+            return null;
+          });
+      content = request;
+    }
+    return content;
+  }
+
+  abstract Promise<T> read(Response response);
+}
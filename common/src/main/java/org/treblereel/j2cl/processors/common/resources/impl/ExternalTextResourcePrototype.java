@@ -0,0 +1,39 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.common.resources.impl;
+
+import elemental2.dom.Response;
+import elemental2.promise.Promise;
+import org.treblereel.j2cl.processors.common.resources.ExternalTextResource;
+
+public class ExternalTextResourcePrototype extends ExternalResourcePrototype<String>
+    implements ExternalTextResource {
+
+  public ExternalTextResourcePrototype(String name, String url) {
+    super(name, url);
+  }
+
+  @Override
+  public Promise<String> getText() {
+    return fetch();
+  }
+
+  @Override
+  Promise<String> read(Response response) {
+    return response.text();
+  }
+}
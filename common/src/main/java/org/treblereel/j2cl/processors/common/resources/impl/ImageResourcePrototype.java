@@ -17,6 +17,8 @@ package org.treblereel.j2cl.processors.common.resources.impl;
 
 import static elemental2.dom.DomGlobal.document;
 
+import elemental2.dom.BaseRenderingContext2D;
+import elemental2.dom.HTMLElement;
 import elemental2.dom.Image;
 import org.treblereel.j2cl.processors.common.resources.ImageResource;
 
@@ -29,13 +31,31 @@ public class ImageResourcePrototype implements ImageResource {
   private final String src;
   private final int width;
   private final int height;
+  private final int left;
+  private final int top;
+  private final boolean sprite;
+
+  private Image loaded;
 
   /** Only called by generated code. */
   public ImageResourcePrototype(String name, String src, int width, int height) {
+    this(name, src, width, height, 0, 0, false);
+  }
+
+  /** Only called by generated code, for an image at the given offset of a sprite. */
+  public ImageResourcePrototype(String name, String src, int width, int height, int left, int top) {
+    this(name, src, width, height, left, top, true);
+  }
+
+  private ImageResourcePrototype(
+      String name, String src, int width, int height, int left, int top, boolean sprite) {
     this.name = name;
     this.height = height;
     this.width = width;
     this.src = src;
+    this.left = left;
+    this.top = top;
+    this.sprite = sprite;
   }
 
   @Override
@@ -50,7 +70,17 @@ public class ImageResourcePrototype implements ImageResource {
     return height;
   }
 
-  /** Returns the Image */
+  @Override
+  public int getLeft() {
+    return left;
+  }
+
+  @Override
+  public int getTop() {
+    return top;
+  }
+
+  /** Returns the Image, a sprite is shown at its natural size and shifted to the region. */
   @Override
   public Image getImage() {
     Image image = (Image) document.createElement("img");
@@ -58,9 +88,35 @@ public class ImageResourcePrototype implements ImageResource {
     image.name = name;
     image.width = width;
     image.height = height;
+    if (sprite) {
+      image.style.setProperty("object-fit", "none");
+      image.style.setProperty("object-position", position());
+    }
     return image;
   }
 
+  @Override
+  public void applyTo(HTMLElement element) {
+    element.style.setProperty("background-image", "url(\"" + src + "\")");
+    element.style.setProperty("background-position", position());
+    element.style.setProperty("background-repeat", "no-repeat");
+    element.style.setProperty("width", width + "px");
+    element.style.setProperty("height", height + "px");
+  }
+
+  @Override
+  public void drawTo(BaseRenderingContext2D context, double x, double y) {
+    if (loaded == null) {
+      loaded = (Image) document.createElement("img");
+      loaded.src = src;
+    }
+    context.drawImage(loaded, left, top, width, height, x, y, width, height);
+  }
+
+  private String position() {
+    return -left + "px " + -top + "px";
+  }
+
   @Override
   public String getName() {
     return name;
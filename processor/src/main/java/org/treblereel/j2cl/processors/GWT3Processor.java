@@ -19,21 +19,36 @@ package org.treblereel.j2cl.processors;
 import com.google.auto.service.AutoService;
 import java.util.Set;
 import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.Processor;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.*;
 import org.treblereel.j2cl.processors.context.AptContext;
+import org.treblereel.j2cl.processors.context.ProcessorStats;
+import org.treblereel.j2cl.processors.generator.AbstractGenerator;
 import org.treblereel.j2cl.processors.generator.ES6ModuleShimGenerator;
 import org.treblereel.j2cl.processors.generator.GWT3EntryPointGenerator;
 import org.treblereel.j2cl.processors.generator.GWT3ExportGenerator;
 import org.treblereel.j2cl.processors.generator.TranslationGenerator;
 import org.treblereel.j2cl.processors.generator.resources.GWT3ResourceGenerator;
+import org.treblereel.j2cl.processors.resource.impl.ResourceCacheImpl;
 
 @AutoService(Processor.class)
 @SupportedSourceVersion(SourceVersion.RELEASE_11)
+@SupportedOptions({
+  ResourceCacheImpl.CACHE_OPTION,
+  ResourceCacheImpl.CACHE_DIR_OPTION,
+  ProcessorStats.STATS_OPTION,
+  GWT3ResourceGenerator.MAVEN_REPOSITORY_OPTION,
+  GWT3ResourceGenerator.MAVEN_OFFLINE_OPTION,
+  GWT3ResourceGenerator.IMAGE_OPTIMIZE_OPTION,
+  GWT3ResourceGenerator.IMAGE_JPEG_QUALITY_OPTION,
+  GWT3ResourceGenerator.EXTERNALIZE_OPTION
+})
 @SupportedAnnotationTypes({
   "org.treblereel.j2cl.processors.annotations.GWT3EntryPoint",
   "org.treblereel.j2cl.processors.annotations.ES6Module",
@@ -43,29 +58,49 @@ import org.treblereel.j2cl.processors.generator.resources.GWT3ResourceGenerator;
 })
 public class GWT3Processor extends AbstractProcessor {
 
-  @Override
-  public boolean process(Set<? extends TypeElement> elements, RoundEnvironment roundEnv) {
-    if (elements.isEmpty()) {
-      return false;
-    }
+  private AptContext context;
 
-    AptContext context = new AptContext(roundEnv, processingEnv);
+  @Override
+  public synchronized void init(ProcessingEnvironment processingEnv) {
+    super.init(processingEnv);
+    context = new AptContext(processingEnv);
 
     new GWT3EntryPointGenerator(context);
     new ES6ModuleShimGenerator(context);
     new GWT3ExportGenerator(context);
     new GWT3ResourceGenerator(context);
     new TranslationGenerator(context);
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> elements, RoundEnvironment roundEnv) {
+    if (roundEnv.processingOver()) {
+      context.stats.report();
+    }
+    if (elements.isEmpty()) {
+      return false;
+    }
+
+    long start = System.nanoTime();
+    context.newRound(roundEnv);
 
     for (TypeElement element : elements) {
       if (context.isAnnotationSupported(element.getQualifiedName().toString())) {
+        Set<Element> annotated = (Set<Element>) roundEnv.getElementsAnnotatedWith(element);
         context
             .getRegistredGeneratorsByAnnotation(element.getQualifiedName().toString())
-            .forEach(
-                generator ->
-                    generator.generate((Set<Element>) roundEnv.getElementsAnnotatedWith(element)));
+            .forEach(generator -> generate(generator, annotated));
       }
     }
+    context.stats.round(System.nanoTime() - start);
     return false;
   }
+
+  private void generate(AbstractGenerator generator, Set<Element> elements) {
+    String name = "generator." + generator.getClass().getSimpleName();
+    context.stats.count(name + ".elements", elements.size());
+    try (ProcessorStats.Timer timer = context.stats.start(name)) {
+      generator.generate(elements);
+    }
+  }
 }
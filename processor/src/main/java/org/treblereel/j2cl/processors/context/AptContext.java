@@ -24,21 +24,40 @@ import java.util.Map;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
 import org.treblereel.j2cl.processors.generator.AbstractGenerator;
+import org.treblereel.j2cl.processors.resource.ResourceCache;
 import org.treblereel.j2cl.processors.resource.ResourceOracle;
+import org.treblereel.j2cl.processors.resource.impl.ResourceCacheImpl;
 import org.treblereel.j2cl.processors.resource.impl.ResourceOracleImpl;
+import org.treblereel.j2cl.processors.utils.J2CLUtils;
 
 public class AptContext {
 
-  private final RoundEnvironment roundEnv;
   private final ProcessingEnvironment processingEnv;
+  private RoundEnvironment roundEnv;
   private final Map<String, List<AbstractGenerator>> generators = new HashMap<>();
 
   public final ResourceOracle resourceOracle;
+  public final ResourceCache resourceCache;
+  public final ProcessorStats stats;
+  public final TemplateRegistry templates;
+  public final J2CLUtils utils;
 
-  public AptContext(RoundEnvironment roundEnv, ProcessingEnvironment processingEnv) {
-    this.roundEnv = roundEnv;
+  /**
+   * The context lives as long as the processor, everything that is expensive to set up is shared by
+   * all rounds and generators. Only the round environment changes, see {@link
+   * #newRound(RoundEnvironment)}.
+   */
+  public AptContext(ProcessingEnvironment processingEnv) {
     this.processingEnv = processingEnv;
+    this.stats = new ProcessorStats(processingEnv);
+    this.templates = new TemplateRegistry(stats);
     this.resourceOracle = new ResourceOracleImpl(this);
+    this.resourceCache = new ResourceCacheImpl(processingEnv);
+    this.utils = new J2CLUtils(processingEnv);
+  }
+
+  public void newRound(RoundEnvironment roundEnv) {
+    this.roundEnv = roundEnv;
   }
 
   public void register(Class<? extends Annotation> annotation, AbstractGenerator generator) {
@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.context;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Build metrics, enabled with {@code -Agwt3.stats=true}. Counters and timers are thread safe, so
+ * they can be updated from the resource encoding pool. At the end of the compilation a summary is
+ * reported as a note and the full data is written to {@value #STATS_FILE} in the class output.
+ */
+public class ProcessorStats {
+
+  public static final String STATS_OPTION = "gwt3.stats";
+
+  static final String STATS_FILE = "META-INF/gwt3-processors/stats.json";
+
+  private static final Timer NOOP = () -> {};
+
+  private final ProcessingEnvironment processingEnv;
+  private final boolean enabled;
+
+  private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+  private final Map<String, LongAdder> timers = new ConcurrentSkipListMap<>();
+  private final List<Long> rounds = new ArrayList<>();
+
+  public ProcessorStats(ProcessingEnvironment processingEnv) {
+    this.processingEnv = processingEnv;
+    this.enabled = Boolean.parseBoolean(processingEnv.getOptions().get(STATS_OPTION));
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void increment(String counter) {
+    count(counter, 1);
+  }
+
+  public void count(String counter, long delta) {
+    if (enabled) {
+      counters.computeIfAbsent(counter, k -> new LongAdder()).add(delta);
+    }
+  }
+
+  /** Starts measuring wall time, which is added to the timer when the returned timer is closed. */
+  public Timer start(String timer) {
+    if (!enabled) {
+      return NOOP;
+    }
+    long start = System.nanoTime();
+    return () -> timers.computeIfAbsent(timer, k -> new LongAdder()).add(System.nanoTime() - start);
+  }
+
+  /** Records the wall time of a processing round. */
+  public void round(long nanos) {
+    if (enabled) {
+      rounds.add(nanos);
+    }
+  }
+
+  public void report() {
+    if (!enabled) {
+      return;
+    }
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, summary());
+    try {
+      FileObject file =
+          processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", STATS_FILE);
+      try (Writer out = file.openWriter()) {
+        out.write(toJson());
+      }
+    } catch (IOException e) {
+      processingEnv
+          .getMessager()
+          .printMessage(Diagnostic.Kind.WARNING, "Unable to write " + STATS_FILE + ": " + e);
+    }
+  }
+
+  private String summary() {
+    StringBuilder sb = new StringBuilder("gwt3-processors stats: ");
+    sb.append(rounds.size())
+        .append(" rounds in ")
+        .append(millis(rounds.stream().mapToLong(Long::longValue).sum()))
+        .append(" ms");
+    timers.forEach(
+        (name, nanos) ->
+            sb.append(", ").append(name).append(' ').append(millis(nanos.sum())).append(" ms"));
+    counters.forEach((name, value) -> sb.append(", ").append(name).append('=').append(value.sum()));
+    return sb.toString();
+  }
+
+  private String toJson() {
+    StringBuilder sb = new StringBuilder("{\n");
+    sb.append("  \"rounds\": ")
+        .append(
+            rounds.stream()
+                .map(nanos -> String.valueOf(millis(nanos)))
+                .collect(Collectors.joining(", ", "[", "]")))
+        .append(",\n");
+    sb.append("  \"timesMillis\": ").append(toJson(timers, true)).append(",\n");
+    sb.append("  \"counters\": ").append(toJson(counters, false)).append("\n");
+    return sb.append("}\n").toString();
+  }
+
+  private static String toJson(Map<String, LongAdder> values, boolean nanos) {
+    return values.entrySet().stream()
+        .map(
+            e ->
+                "\""
+                    + e.getKey()
+                    + "\": "
+                    + (nanos ? millis(e.getValue().sum()) : e.getValue().sum()))
+        .collect(Collectors.joining(", ", "{", "}"));
+  }
+
+  private static long millis(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+
+  /** A running measurement, closing it records the elapsed time. */
+  @FunctionalInterface
+  public interface Timer extends AutoCloseable {
+
+    @Override
+    void close();
+  }
+}
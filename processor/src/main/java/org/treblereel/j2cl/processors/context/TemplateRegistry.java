@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.context;
+
+import freemarker.template.Configuration;
+import freemarker.template.Template;
+import freemarker.template.TemplateException;
+import freemarker.template.TemplateExceptionHandler;
+import java.io.IOException;
+import java.io.Writer;
+import org.treblereel.j2cl.processors.exception.GenerationException;
+
+/**
+ * The templates of all generators. There is a single FreeMarker configuration for the whole
+ * compilation, so each template is parsed only once no matter how many rounds use it.
+ */
+public class TemplateRegistry {
+
+  private final ProcessorStats stats;
+
+  private final Configuration cfg = new Configuration(Configuration.VERSION_2_3_29);
+
+  {
+    cfg.setClassForTemplateLoading(this.getClass(), "/templates/resources");
+    cfg.setDefaultEncoding("UTF-8");
+    cfg.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
+    cfg.setLogTemplateExceptions(false);
+    cfg.setWrapUncheckedExceptions(true);
+    cfg.setFallbackOnNullLoopVariable(false);
+  }
+
+  TemplateRegistry(ProcessorStats stats) {
+    this.stats = stats;
+  }
+
+  public Template get(String name) {
+    try {
+      return cfg.getTemplate(name);
+    } catch (IOException e) {
+      throw new GenerationException(e);
+    }
+  }
+
+  public void process(Template template, Object dataModel, Writer out) throws IOException {
+    stats.increment("templates.rendered");
+    try {
+      template.process(dataModel, out);
+    } catch (TemplateException e) {
+      throw new GenerationException(e);
+    }
+  }
+}
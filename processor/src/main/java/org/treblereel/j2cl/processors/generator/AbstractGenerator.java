@@ -16,10 +16,14 @@
 
 package org.treblereel.j2cl.processors.generator;
 
+import freemarker.template.Template;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.Writer;
 import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
 import java.util.Set;
 import javax.annotation.processing.FilerException;
 import javax.lang.model.element.Element;
@@ -38,19 +42,20 @@ public abstract class AbstractGenerator {
 
   public AbstractGenerator(AptContext context, Class<? extends Annotation> annotation) {
     this.context = context;
-    this.utils = new J2CLUtils(context.getProcessingEnv());
+    this.utils = context.utils;
     context.register(annotation, this);
   }
 
   public abstract void generate(Set<Element> elements);
 
-  protected void writeResource(String filename, String path, String content) {
+  protected void writeResource(
+      String filename, String path, String content, Element... originatingElements) {
     try {
       FileObject file =
           context
               .getProcessingEnv()
               .getFiler()
-              .createResource(StandardLocation.SOURCE_OUTPUT, path, filename);
+              .createResource(StandardLocation.SOURCE_OUTPUT, path, filename, originatingElements);
       PrintWriter pw = new PrintWriter(new OutputStreamWriter(file.openOutputStream(), "UTF-8"));
       pw.print(content);
       pw.close();
@@ -63,10 +68,41 @@ public abstract class AbstractGenerator {
     }
   }
 
-  protected void writeSource(String fileName, String source) {
+  /** Renders the template straight into the resource, without building its content in memory. */
+  protected void writeResource(
+      String filename,
+      String path,
+      Template template,
+      Object dataModel,
+      Element... originatingElements) {
+    try {
+      FileObject file =
+          context
+              .getProcessingEnv()
+              .getFiler()
+              .createResource(StandardLocation.SOURCE_OUTPUT, path, filename, originatingElements);
+      try (Writer out =
+          new BufferedWriter(
+              new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8))) {
+        context.templates.process(template, dataModel, out);
+      }
+    } catch (IOException e) {
+      context
+          .getProcessingEnv()
+          .getMessager()
+          .printMessage(Diagnostic.Kind.ERROR, "Failed to write file: " + e);
+      throw new GenerationException("Failed to write file: " + e, e);
+    }
+  }
+
+  protected void writeSource(String fileName, String source, Element... originatingElements) {
     try (PrintWriter out =
         new PrintWriter(
-            context.getProcessingEnv().getFiler().createSourceFile(fileName).openWriter())) {
+            context
+                .getProcessingEnv()
+                .getFiler()
+                .createSourceFile(fileName, originatingElements)
+                .openWriter())) {
       out.append(source);
     } catch (FilerException e) {
       throw new GenerationException(e);
@@ -114,7 +114,7 @@ public class ES6ModuleShimGenerator extends AbstractGenerator {
     source.append(";");
     source.append(System.lineSeparator());
 
-    writeResource(typeElement.getSimpleName() + CLOSURE_JS, pkg, source.toString());
+    writeResource(typeElement.getSimpleName() + CLOSURE_JS, pkg, source.toString(), typeElement);
   }
 
   private void generateShim(TypeElement typeElement, String clazzName, String moduleFileName) {
@@ -138,6 +138,6 @@ public class ES6ModuleShimGenerator extends AbstractGenerator {
     source.append("};");
     source.append(System.lineSeparator());
 
-    writeResource(typeElement.getSimpleName() + SHIM_JS, pkg, source.toString());
+    writeResource(typeElement.getSimpleName() + SHIM_JS, pkg, source.toString(), typeElement);
   }
 }
@@ -107,7 +107,7 @@ public class GWT3EntryPointGenerator extends AbstractGenerator {
 
     String source = generateNativeJsSource(methodName, className, isJsType);
 
-    writeResource(className + ".native.js", classPkg, source);
+    writeResource(className + ".native.js", classPkg, source, clazz);
   }
 
   private String generateNativeJsSource(String methodName, String className, boolean isJsType) {
@@ -18,14 +18,6 @@ package org.treblereel.j2cl.processors.generator;
 
 import com.google.auto.common.MoreElements;
 import com.google.auto.common.MoreTypes;
-import freemarker.template.Configuration;
-import freemarker.template.Template;
-import freemarker.template.TemplateException;
-import freemarker.template.TemplateExceptionHandler;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
-import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -50,23 +42,9 @@ import org.treblereel.j2cl.processors.exception.GenerationException;
 import org.treblereel.j2cl.processors.generator.dto.ExportDTO;
 import org.treblereel.j2cl.processors.generator.dto.MethodDTO;
 import org.treblereel.j2cl.processors.generator.dto.PropertyDTO;
-import org.treblereel.j2cl.processors.generator.resources.StringOutputStream;
 
 public class GWT3ExportGenerator extends AbstractGenerator {
 
-  protected final Configuration cfg = new Configuration(Configuration.VERSION_2_3_29);
-
-  {
-    cfg.setClassForTemplateLoading(this.getClass(), "/templates/resources");
-    cfg.setDefaultEncoding("UTF-8");
-    cfg.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
-    cfg.setLogTemplateExceptions(false);
-    cfg.setWrapUncheckedExceptions(true);
-    cfg.setFallbackOnNullLoopVariable(false);
-  }
-
-  private Template template;
-
   private final Map<TypeElement, ExportDTO> exportDTOs = new HashMap<>();
 
   public GWT3ExportGenerator(AptContext context) {
@@ -75,6 +53,7 @@ public class GWT3ExportGenerator extends AbstractGenerator {
 
   @Override
   public void generate(Set<Element> elements) {
+    exportDTOs.clear();
     HashMap<TypeElement, Set<ExecutableElement>> exports = new HashMap<>();
 
     for (Element element : elements) {
@@ -129,25 +108,13 @@ public class GWT3ExportGenerator extends AbstractGenerator {
   }
 
   private void generate(TypeElement typeElement, ExportDTO exportDTO) {
-    try {
-      if (template == null) {
-        template = cfg.getTemplate("export.ftlh");
-      }
-      String pkg = MoreElements.getPackage(typeElement).getQualifiedName().toString();
-
-      StringOutputStream os = new StringOutputStream();
-      try (Writer out = new OutputStreamWriter(os, StandardCharsets.UTF_8)) {
-        if (template == null) {
-          template = cfg.getTemplate("textresource.ftlh");
-        }
-        template.process(exportDTO, out);
-      } catch (TemplateException | IOException e) {
-        throw new GenerationException(e);
-      }
-      writeResource(typeElement.getSimpleName().toString() + "$$GWT3Export.js", pkg, os.toString());
-    } catch (Exception e) {
-      throw new GenerationException(e);
-    }
+    String pkg = MoreElements.getPackage(typeElement).getQualifiedName().toString();
+    writeResource(
+        typeElement.getSimpleName().toString() + "$$GWT3Export.js",
+        pkg,
+        context.templates.get("export.ftlh"),
+        exportDTO,
+        typeElement);
   }
 
   private ExportDTO getExportDTO(TypeElement parent) {
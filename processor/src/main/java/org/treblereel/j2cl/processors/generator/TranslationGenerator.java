@@ -24,7 +24,9 @@ import com.google.javascript.jscomp.jarjar.com.google.common.collect.ImmutableLi
 import com.sun.source.util.Trees;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.net.URL;
 import java.util.*;
 import java.util.stream.Collectors;
 import javax.lang.model.element.Element;
@@ -33,7 +35,9 @@ import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
 import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
 import org.treblereel.j2cl.processors.annotations.TranslationBundle;
 import org.treblereel.j2cl.processors.annotations.TranslationKey;
 import org.treblereel.j2cl.processors.context.AptContext;
@@ -49,6 +53,7 @@ public class TranslationGenerator extends AbstractGenerator {
 
   @Override
   public void generate(Set<Element> elements) {
+    defaultMessageMapping.clear();
     Map<TypeElement, Set<ExecutableElement>> beansAndMethods = new HashMap<>();
     for (Element element : elements) {
       TypeElement parent = checkBean(element);
@@ -81,8 +86,9 @@ public class TranslationGenerator extends AbstractGenerator {
         });
 
     Map<String, Map<String, String>> propertiesMapping = processMapping(toMapping);
+    Element[] beans = beansAndMethods.keySet().toArray(new Element[0]);
     for (Map.Entry<String, Map<String, String>> entry : propertiesMapping.entrySet()) {
-      generateXTB(entry.getKey(), entry.getValue());
+      generateXTB(entry.getKey(), entry.getValue(), beans);
     }
   }
 
@@ -101,7 +107,8 @@ public class TranslationGenerator extends AbstractGenerator {
     writeResource(
         impl + ".native.js",
         MoreElements.getPackage(bean).getQualifiedName().toString(),
-        sb.toString());
+        sb.toString(),
+        bean);
   }
 
   private void writeMsg(StringBuilder sb, ExecutableElement method, JsMessage asJsMessage) {
@@ -260,13 +267,15 @@ public class TranslationGenerator extends AbstractGenerator {
     sb.append(System.lineSeparator());
 
     String name = MoreElements.getPackage(bean).getQualifiedName().toString() + "." + impl;
-    writeSource(name, sb.toString());
+    writeSource(name, sb.toString(), bean);
   }
 
-  private Map<String, Set<Properties>> processBundles(Element element) {
-    Trees trees = Trees.instance(context.getProcessingEnv());
-    JavaFileObject sourceFile = trees.getPath(element).getCompilationUnit().getSourceFile();
-    URI uri = sourceFile.toUri();
+  private Map<String, Set<Properties>> processBundles(TypeElement element) {
+    Map<String, Set<Properties>> result = new HashMap<>();
+    URI uri = getSourceFileUri(element);
+    if (uri == null) {
+      return result;
+    }
 
     File f = new File(uri.getPath());
     File folder = f.getParentFile();
@@ -277,8 +286,6 @@ public class TranslationGenerator extends AbstractGenerator {
                 candidate.startsWith(element.getSimpleName().toString())
                     && candidate.endsWith(".properties"));
 
-    Map<String, Set<Properties>> result = new HashMap<>();
-
     if (files == null) {
       return result;
     }
@@ -294,8 +301,11 @@ public class TranslationGenerator extends AbstractGenerator {
         result.put(locale, new HashSet<>());
       }
       try {
+        URL url = file.toURI().toURL();
         Properties prop = new Properties();
-        prop.load(file.toURL().openStream());
+        try (InputStream is = url.openStream()) {
+          prop.load(is);
+        }
         result.get(locale).add(prop);
       } catch (IOException e) {
         throw new Error(e);
@@ -304,6 +314,41 @@ public class TranslationGenerator extends AbstractGenerator {
     return result;
   }
 
+  /**
+   * Tree API is only available when running inside javac itself, build tools that wrap the
+   * processing environment (like Gradle's incremental compilation) get the source path lookup
+   * instead.
+   */
+  private URI getSourceFileUri(TypeElement element) {
+    try {
+      Trees trees = Trees.instance(context.getProcessingEnv());
+      JavaFileObject sourceFile = trees.getPath(element).getCompilationUnit().getSourceFile();
+      return sourceFile.toUri();
+    } catch (IllegalArgumentException e) {
+      try {
+        return context
+            .getProcessingEnv()
+            .getFiler()
+            .getResource(
+                StandardLocation.SOURCE_PATH,
+                MoreElements.getPackage(element).getQualifiedName(),
+                element.getSimpleName() + ".java")
+            .toUri();
+      } catch (IOException | IllegalArgumentException ex) {
+        context
+            .getProcessingEnv()
+            .getMessager()
+            .printMessage(
+                Diagnostic.Kind.WARNING,
+                "Unable to locate the source folder of "
+                    + element.getQualifiedName()
+                    + ", translation bundles are skipped",
+                element);
+        return null;
+      }
+    }
+  }
+
   private ExecutableElement check(Element elm) {
     ExecutableElement method = (ExecutableElement) elm;
 
@@ -374,13 +419,14 @@ public class TranslationGenerator extends AbstractGenerator {
     }
   }
 
-  private void generateXTB(String locale, Map<String, String> mapping) {
+  private void generateXTB(String locale, Map<String, String> mapping, Element[] beans) {
     if (!locale.isEmpty()) {
       String source = new XTBGenerator(locale, mapping).generate();
       writeResource(
           "gwt3_message_bundle_" + locale + ".xtb",
           "org.treblereel.j2cl.processors.translation",
-          source);
+          source,
+          beans);
     }
   }
 
@@ -17,24 +17,26 @@
 package org.treblereel.j2cl.processors.generator.resources;
 
 import com.google.auto.common.MoreElements;
-import com.google.common.io.BaseEncoding;
-import freemarker.template.Configuration;
 import freemarker.template.Template;
-import freemarker.template.TemplateException;
-import freemarker.template.TemplateExceptionHandler;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.net.URL;
-import java.net.URLConnection;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
-import javax.lang.model.element.TypeElement;
+import org.apache.commons.io.output.WriterOutputStream;
 import org.apache.commons.text.StringEscapeUtils;
 import org.treblereel.j2cl.processors.common.resources.ClientBundle;
 import org.treblereel.j2cl.processors.common.resources.ResourcePrototype;
@@ -43,92 +45,265 @@ import org.treblereel.j2cl.processors.common.resources.TextResource;
 import org.treblereel.j2cl.processors.common.resources.exception.ResourceException;
 import org.treblereel.j2cl.processors.context.AptContext;
 import org.treblereel.j2cl.processors.exception.GenerationException;
+import org.treblereel.j2cl.processors.resource.ResourceCache;
 
 public abstract class AbstractResourceGenerator {
 
-  protected final Configuration cfg = new Configuration(Configuration.VERSION_2_3_29);
-
-  {
-    cfg.setClassForTemplateLoading(this.getClass(), "/templates/resources");
-    cfg.setDefaultEncoding("UTF-8");
-    cfg.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
-    cfg.setLogTemplateExceptions(false);
-    cfg.setWrapUncheckedExceptions(true);
-    cfg.setFallbackOnNullLoopVariable(false);
-  }
-
-  protected static final int MAX_STRING_CHUNK = 16383;
+  /**
+   * Must be bumped whenever the way cached values and fragments are generated changes. The cache
+   * keys every entry by the digest of the processor as well, so a missed bump only affects builds
+   * of the processor itself.
+   */
+  private static final String CACHE_VERSION = "7";
 
-  private Template template;
+  private String initializerTemplateDigest;
 
   protected final AptContext context;
   private final Class<? extends ResourcePrototype> prototype;
+  private final String initializerTemplateName;
 
   protected final DefaultExtensions defaultExtensions;
 
+  /** Null if the resources of the generator can't be externalized. */
+  protected final ExternalResources externalResources;
+
+  /** Null if the values of the generator aren't shared. */
+  private final SharedValues sharedValues;
+
   AbstractResourceGenerator(
       AptContext context,
       Class<? extends ResourcePrototype> prototype,
-      DefaultExtensions defaultExtensions) {
+      DefaultExtensions defaultExtensions,
+      String initializerTemplateName,
+      ExternalResources externalResources,
+      SharedValues sharedValues) {
     this.context = context;
     this.prototype = prototype;
     this.defaultExtensions = defaultExtensions;
+    this.initializerTemplateName = initializerTemplateName;
+    this.externalResources = externalResources;
+    this.sharedValues = sharedValues;
   }
 
-  void generate(Map<String, Object> root, TypeElement clientBundle, ExecutableElement method) {
+  void generate(Map<String, Object> root, ExecutableElement method, Fragment initializer) {
     ((List<String>) root.get("resources")).add(method.getSimpleName().toString());
     Map<String, Object> definition = new HashMap<>();
     definition.put("name", method.getSimpleName().toString());
-    definition.put("prototype", prototype.getCanonicalName());
+    // the return type, it may extend the prototype, as a CssResource with accessors does
+    definition.put("prototype", method.getReturnType().toString());
+    definition.put("initializer", initializer);
 
-    initializer(definition, clientBundle, method);
+    Template template = context.templates.get("method.ftlh");
+    ((List<Fragment>) root.get("methods")).add(process(template, definition));
+  }
 
-    StringOutputStream os = new StringOutputStream();
-    try (Writer out = new OutputStreamWriter(os, StandardCharsets.UTF_8)) {
-      if (template == null) {
-        template = cfg.getTemplate("method.ftlh");
-      }
-      template.process(definition, out);
-      ((List<String>) root.get("methods")).add(os.toString());
-    } catch (TemplateException | IOException e) {
-      throw new GenerationException(e);
+  /**
+   * Resolves the resource of the method and captures everything its initializer depends on. It must
+   * be called on the processor thread, since neither the Filer nor the javac model are thread safe.
+   * The returned task renders the initializer, unless it's in the cache, and can run on any thread.
+   *
+   * <p>{@code artifactResource} is the resource of a {@link ClientBundle.MavenArtifactSource}
+   * that's read from the artifact, if there is one.
+   *
+   * <p>Initializers are rendered while the bundle is written, only after every task of the round is
+   * done, since the value of a resource may be shared with other resources, see {@link #value}.
+   */
+  abstract Callable<Fragment> prepare(ExecutableElement method, URL artifactResource);
+
+  /** Fails if the method asks for its resource to be externalized, which the generator can't do. */
+  void checkNotExternalized(ExecutableElement method) {
+    if (method.getAnnotation(ClientBundle.Externalize.class) != null) {
+      throw new GenerationException(
+          String.format(
+              "@%s isn't supported by %s at %s.%s",
+              ClientBundle.Externalize.class.getSimpleName(),
+              prototype.getSimpleName(),
+              method.getEnclosingElement(),
+              method.getSimpleName()));
+    }
+  }
+
+  /** Returns the resource of the method. */
+  URL resolve(ExecutableElement method, URL artifactResource) {
+    if (artifactResource != null) {
+      return artifactResource;
     }
+    return getResource(method, defaultExtensions != null ? defaultExtensions.value() : null);
+  }
+
+  /** Reads the resource and counts it in the stats. */
+  ResourceContent read(URL resource) throws IOException {
+    ResourceContent content = ResourceContent.read(resource);
+    context.stats.increment("resources.read");
+    context.stats.count("resources.bytesRead", content.getLength());
+    return content;
+  }
+
+  /**
+   * Returns the key of a value made of the parts and the cache version. Unlike {@link #cacheKey},
+   * it doesn't depend on the generator, resources of different types with the same value share it.
+   */
+  String valueKey(String... parts) {
+    List<String> keyParts = new ArrayList<>();
+    keyParts.add(CACHE_VERSION);
+    keyParts.addAll(Arrays.asList(parts));
+    return ResourceCache.key(keyParts.toArray(new String[0]));
   }
 
-  protected String write(String toWrite, ExecutableElement method, Function<String, String> call) {
-    if (toWrite.length() > MAX_STRING_CHUNK) {
-      String encoded = writeLongString(toWrite);
-      return call.apply(encoded + ";");
+  /**
+   * Returns the expression of the value of a resource of the bundle, a string literal rendered by
+   * {@code literal}, which is skipped if the value is cached under the key. Resources with the same
+   * key share one value, see {@link SharedValues}. Values are kept in memory only if the content
+   * is, big ones are encoded into the cache, or, if there is no cache, streamed from the resource
+   * while they are written.
+   */
+  Fragment value(Element bundle, String key, ResourceContent content, Callable<Fragment> literal)
+      throws Exception {
+    Fragment fragment;
+    Optional<ResourceCache.Entry> cached = context.resourceCache.get(key);
+    if (cached.isPresent()) {
+      context.stats.increment("resources.cacheHits");
+      fragment = cached.get()::writeTo;
     } else {
-      return call.apply("\"" + escape(toWrite) + "\";");
+      Fragment rendered = literal.call();
+      Optional<ResourceCache.Entry> stored = context.resourceCache.put(key, rendered::writeTo);
+      if (stored.isPresent()) {
+        fragment = stored.get()::writeTo;
+      } else if (content.isInMemory()) {
+        StringWriter out = new StringWriter();
+        rendered.writeTo(out);
+        String result = out.toString();
+        fragment = writer -> writer.write(result);
+      } else {
+        fragment = rendered;
+      }
     }
+    return sharedValues != null
+        ? sharedValues.add(bundle, key, content.getLength(), fragment)
+        : fragment;
+  }
+
+  /** A statement that starts with {@code prefix} and ends with the expression. */
+  static Fragment statement(String prefix, Fragment expression) {
+    return out -> {
+      out.write(prefix);
+      expression.writeTo(out);
+      out.write(";");
+    };
+  }
+
+  /** Returns a cache key made of the parts, the cache version and the generator. */
+  String cacheKey(String... parts) {
+    List<String> keyParts = new ArrayList<>();
+    keyParts.add(CACHE_VERSION);
+    keyParts.add(getClass().getName());
+    keyParts.addAll(Arrays.asList(parts));
+    return ResourceCache.key(keyParts.toArray(new String[0]));
   }
 
   /**
-   * A single constant that is too long will crash the compiler with an out of memory error. Break
-   * up the constant and generate code that appends using a buffer.
-   *
-   * @apiNote from gwt2 generator
+   * Returns the fragment cached under the key, or renders it and stores it in the cache. The
+   * rendered fragment is returned as is if there is no cache.
+   */
+  Fragment cached(String key, Callable<Fragment> render) throws Exception {
+    Optional<ResourceCache.Entry> cached = context.resourceCache.get(key);
+    if (cached.isPresent()) {
+      context.stats.increment("resources.cacheHits");
+      return cached.get()::writeTo;
+    }
+    Fragment fragment = render.call();
+    Optional<ResourceCache.Entry> stored = context.resourceCache.put(key, fragment::writeTo);
+    return stored.isPresent() ? stored.get()::writeTo : fragment;
+  }
+
+  protected Fragment render(Map<String, Object> definition) {
+    return process(getInitializerTemplate(), definition);
+  }
+
+  Fragment process(Template template, Map<String, Object> definition) {
+    return out -> context.templates.process(template, definition, out);
+  }
+
+  private Template getInitializerTemplate() {
+    return context.templates.get(initializerTemplateName);
+  }
+
+  String getInitializerTemplateDigest() {
+    if (initializerTemplateDigest == null) {
+      initializerTemplateDigest =
+          ResourceCache.key(initializerTemplateName, getInitializerTemplate().toString());
+    }
+    return initializerTemplateDigest;
+  }
+
+  /**
+   * Writes a statement that starts with {@code prefix} and ends with the content as a string
+   * literal.
    */
-  private String writeLongString(String toWrite) {
-    StringBuilder builder = new StringBuilder();
-    builder.append("new StringBuilder()").append("\n");
-    int offset = 0;
-    int length = toWrite.length();
-    while (offset < length - 1) {
-      int subLength = Math.min(MAX_STRING_CHUNK, length - offset);
-      builder.append("                                           ");
-      builder.append(".append(\"");
-      builder.append(escape(toWrite.substring(offset, offset + subLength)));
-      builder.append("\")").append("\n");
-      offset += subLength;
+  protected void writeString(Writer out, String prefix, Reader content) throws IOException {
+    out.write(prefix);
+    writeStringLiteral(out, content);
+    out.write(";");
+  }
+
+  /** Writes the content as a string literal. */
+  protected void writeStringLiteral(Writer out, Reader content) throws IOException {
+    try (StringLiteralWriter literal = new StringLiteralWriter(out)) {
+      context.stats.count("encoding.textChars", content.transferTo(literal));
+    }
+  }
+
+  /**
+   * Writes a statement that starts with {@code prefix} and ends with the url as a string literal.
+   */
+  protected void writeUrl(Writer out, String prefix, String url) throws IOException {
+    out.write(prefix + "\"" + escape(url) + "\";");
+  }
+
+  /**
+   * Writes a statement that starts with {@code prefix} and ends with the content as a base64 {@code
+   * data:} url literal.
+   */
+  protected void writeDataUrl(Writer out, String prefix, String mimeType, InputStream content)
+      throws IOException {
+    out.write(prefix);
+    writeDataUrlLiteral(out, mimeType, content);
+    out.write(";");
+  }
+
+  /** Writes the content as a base64 {@code data:} url literal. */
+  protected void writeDataUrlLiteral(Writer out, String mimeType, InputStream content)
+      throws IOException {
+    try (StringLiteralWriter literal = new StringLiteralWriter(out)) {
+      literal.write("data:" + mimeType + ";base64,");
+      try (OutputStream base64 =
+          Base64.getEncoder()
+              .wrap(
+                  WriterOutputStream.builder()
+                      .setWriter(literal)
+                      .setCharset(StandardCharsets.US_ASCII)
+                      .get())) {
+        long length = content.transferTo(base64);
+        context.stats.count("encoding.base64BytesIn", length);
+        context.stats.count("encoding.base64BytesOut", (length + 2) / 3 * 4);
+      }
     }
-    builder.append("                                           ");
-    builder.append(".toString()").append("\n");
-    return builder.toString();
   }
 
   protected URL getResource(ExecutableElement method, String[] extensions) {
+    URL url = findResource(method, extensions);
+    if (url == null) {
+      throw new ResourceException(
+          String.format(
+              "Unable to find resource [%s] at %s.%s",
+              TextResource.class.getSimpleName(),
+              method.getEnclosingElement().toString(),
+              method.getSimpleName().toString()));
+    }
+    return url;
+  }
+
+  private URL findResource(ExecutableElement method, String[] extensions) {
     String pkg =
         MoreElements.getPackage(method).getQualifiedName().toString().replaceAll("\\.", "/");
     if (method.getAnnotation(ClientBundle.Source.class) != null) {
@@ -161,12 +336,7 @@ public abstract class AbstractResourceGenerator {
         }
       }
     }
-    throw new ResourceException(
-        String.format(
-            "Unable to find resource [%s] at %s.%s",
-            TextResource.class.getSimpleName(),
-            method.getEnclosingElement().toString(),
-            method.getSimpleName().toString()));
+    return null;
   }
 
   /**
@@ -179,59 +349,4 @@ public abstract class AbstractResourceGenerator {
   public static String escape(String unescaped) {
     return StringEscapeUtils.escapeJava(unescaped);
   }
-
-  protected static String toBase64(byte[] data) {
-    return BaseEncoding.base64().encode(data).replaceAll("\\s+", "");
-  }
-
-  protected String readURLAsString(URL url, ExecutableElement method) {
-    byte[] bytes = readURLAsBytes(url);
-    if (bytes != null) {
-      return new String(bytes, StandardCharsets.UTF_8);
-    }
-    return null;
-  }
-
-  protected byte[] readURLAsBytes(URL url) {
-    try {
-      URLConnection conn = url.openConnection();
-      conn.setUseCaches(false);
-      return readURLConnectionAsBytes(conn);
-    } catch (IOException e) {
-      return null;
-    }
-  }
-
-  protected byte[] readURLConnectionAsBytes(URLConnection connection) {
-    try (InputStream input = connection.getInputStream()) {
-      int contentLength = connection.getContentLength();
-      if (contentLength < 0) {
-        return null;
-      }
-      return readBytesFromInputStream(input, contentLength);
-    } catch (IOException e) {
-      return null;
-    }
-  }
-
-  protected byte[] readBytesFromInputStream(InputStream input, int byteLength) {
-    try {
-      byte[] bytes = new byte[byteLength];
-      int byteOffset = 0;
-      while (byteOffset < byteLength) {
-        int bytesReadCount = input.read(bytes, byteOffset, byteLength - byteOffset);
-        if (bytesReadCount == -1) {
-          return null;
-        }
-        byteOffset += bytesReadCount;
-      }
-      return bytes;
-    } catch (IOException e) {
-      // Ignored.
-    }
-    return null;
-  }
-
-  abstract void initializer(
-      Map<String, Object> root, TypeElement clientBundle, ExecutableElement method);
 }
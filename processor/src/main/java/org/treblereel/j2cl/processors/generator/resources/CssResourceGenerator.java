@@ -0,0 +1,300 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.generator.resources;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.util.ElementFilter;
+import org.treblereel.j2cl.processors.common.resources.CssResource;
+import org.treblereel.j2cl.processors.common.resources.ResourcePrototype;
+import org.treblereel.j2cl.processors.context.AptContext;
+import org.treblereel.j2cl.processors.exception.GenerationException;
+import org.treblereel.j2cl.processors.resource.ResourceCache;
+
+/**
+ * Minifies stylesheets, embeds the small resources they reference by {@code url()} and renames the
+ * classes of the accessor methods of a {@link CssResource} when {@link
+ * CssResource.CssOptions#obfuscate()} is set.
+ *
+ * <p>Unlike other resources, the stylesheet is read on the processor thread, since the references
+ * it contains are resolved by the resource oracle, which isn't thread safe. Relative references are
+ * resolved against the stylesheet, absolute ones are looked up on the classpath. The result is
+ * cached by the content of the stylesheet and of every embedded resource.
+ */
+class CssResourceGenerator extends AbstractResourceGenerator {
+
+  /** References that point at a resource of the classpath, without a scheme, query or fragment. */
+  private static final Pattern LOCAL_URL =
+      Pattern.compile("^(?![a-zA-Z][a-zA-Z0-9+.-]*:|//)[^?#]+$");
+
+  /** The default of {@link CssResource.CssOptions#maxInlineSize()}. */
+  private static final int DEFAULT_MAX_INLINE_SIZE = 4096;
+
+  private final MimeTypes mimeTypes;
+
+  CssResourceGenerator(AptContext context, MimeTypes mimeTypes) {
+    super(
+        context,
+        CssResource.class,
+        CssResource.class.getAnnotation(ResourcePrototype.DefaultExtensions.class),
+        "cssresource.ftlh",
+        null,
+        null);
+    this.mimeTypes = mimeTypes;
+  }
+
+  @Override
+  Callable<Fragment> prepare(ExecutableElement method, URL artifactResource) {
+    URL resource = resolve(method, artifactResource);
+    checkNotExternalized(method);
+    String name = method.getSimpleName().toString();
+    String type = method.getReturnType().toString();
+    String origin = method.getEnclosingElement() + "." + name;
+    CssResource.CssOptions options = method.getAnnotation(CssResource.CssOptions.class);
+    boolean obfuscate = options != null && options.obfuscate();
+    int maxInlineSize = options != null ? options.maxInlineSize() : DEFAULT_MAX_INLINE_SIZE;
+    Map<String, String> accessors = accessors(method);
+    String prefix = obfuscate ? prefix(method) : null;
+
+    ResourceContent content;
+    String css;
+    try {
+      content = read(resource);
+      css = toString(content);
+    } catch (IOException e) {
+      throw new GenerationException("Unable to read " + resource, e);
+    }
+    Map<String, URL> references = new LinkedHashMap<>();
+    for (String url : StylesheetRewriter.urls(css)) {
+      URL reference = resolveUrl(resource, url);
+      if (reference != null) {
+        references.put(url, reference);
+      }
+    }
+
+    return () -> {
+      Map<String, ResourceContent> inlined = new LinkedHashMap<>();
+      List<String> parts = new ArrayList<>();
+      parts.add(getInitializerTemplateDigest());
+      parts.add(name);
+      parts.add(type);
+      parts.add(content.getDigest());
+      parts.add(String.valueOf(prefix));
+      parts.add(String.valueOf(maxInlineSize));
+      accessors.forEach(
+          (accessor, className) -> {
+            parts.add(accessor);
+            parts.add(className);
+          });
+      for (Map.Entry<String, URL> reference : references.entrySet()) {
+        ResourceContent referenced = readReference(reference.getValue());
+        if (referenced != null
+            && referenced.getLength() <= maxInlineSize
+            && isEmbeddable(mimeTypes.of(referenced))) {
+          inlined.put(reference.getKey(), referenced);
+          parts.add(reference.getKey());
+          parts.add(referenced.getDigest());
+        }
+      }
+      return cached(
+          cacheKey(parts.toArray(new String[0])),
+          () -> compile(origin, name, type, css, inlined, accessors, prefix));
+    };
+  }
+
+  private Fragment compile(
+      String origin,
+      String name,
+      String type,
+      String css,
+      Map<String, ResourceContent> inlined,
+      Map<String, String> accessors,
+      String prefix)
+      throws IOException {
+    String result = StylesheetRewriter.minify(css);
+    Map<String, String> dataUrls = new HashMap<>();
+    for (Map.Entry<String, ResourceContent> reference : inlined.entrySet()) {
+      byte[] bytes;
+      try (InputStream input = reference.getValue().openStream()) {
+        bytes = input.readAllBytes();
+      }
+      dataUrls.put(
+          reference.getKey(),
+          "data:"
+              + mimeTypes.of(reference.getValue())
+              + ";base64,"
+              + Base64.getEncoder().encodeToString(bytes));
+    }
+    result = StylesheetRewriter.replaceUrls(result, dataUrls::get);
+    context.stats.count("css.urlsInlined", dataUrls.size());
+
+    Set<String> classes = StylesheetRewriter.classes(result);
+    Map<String, String> classNames = new LinkedHashMap<>();
+    List<Map<String, String>> definitions = new ArrayList<>();
+    for (Map.Entry<String, String> accessor : accessors.entrySet()) {
+      String className = accessor.getValue();
+      if (!classes.contains(className)) {
+        throw new GenerationException(
+            String.format(
+                "Class .%s of %s.%s isn't used in the stylesheet of %s",
+                className, type, accessor.getKey(), origin));
+      }
+      if (prefix != null) {
+        classNames.computeIfAbsent(
+            className, key -> prefix + Integer.toString(classNames.size(), 36));
+      }
+      Map<String, String> definition = new HashMap<>();
+      definition.put("method", accessor.getKey());
+      definition.put("className", classNames.getOrDefault(className, className));
+      definitions.add(definition);
+    }
+    if (!classNames.isEmpty()) {
+      result = StylesheetRewriter.renameClasses(result, classNames);
+      context.stats.count("css.classesRenamed", classNames.size());
+    }
+    context.stats.increment("css.minified");
+    context.stats.count("css.charsSaved", css.length() - result.length());
+
+    String stylesheet = result;
+    Map<String, Object> definition = new HashMap<>();
+    definition.put("name", name);
+    definition.put("type", type);
+    definition.put("accessors", definitions);
+    definition.put(
+        "impl", (Fragment) out -> writeString(out, "return ", new StringReader(stylesheet)));
+    return render(definition);
+  }
+
+  /**
+   * The accessor methods of the resource type, by the class name they return. Methods of {@link
+   * CssResource} itself aren't accessors.
+   */
+  private Map<String, String> accessors(ExecutableElement method) {
+    Map<String, String> accessors = new LinkedHashMap<>();
+    TypeElement type = (TypeElement) ((DeclaredType) method.getReturnType()).asElement();
+    for (ExecutableElement accessor :
+        ElementFilter.methodsIn(context.getProcessingEnv().getElementUtils().getAllMembers(type))) {
+      TypeElement owner = (TypeElement) accessor.getEnclosingElement();
+      if (owner.getKind() != ElementKind.INTERFACE
+          || !accessor.getModifiers().contains(Modifier.ABSTRACT)
+          || owner.getQualifiedName().contentEquals(CssResource.class.getCanonicalName())
+          || owner.getQualifiedName().contentEquals(ResourcePrototype.class.getCanonicalName())) {
+        continue;
+      }
+      if (!accessor.getParameters().isEmpty()
+          || accessor.getReturnType().getKind() != TypeKind.DECLARED
+          || !accessor.getReturnType().toString().equals(String.class.getCanonicalName())) {
+        throw new GenerationException(
+            String.format(
+                "%s.%s must return a class name, a String, and have no parameters",
+                owner.getQualifiedName(), accessor.getSimpleName()));
+      }
+      CssResource.ClassName className = accessor.getAnnotation(CssResource.ClassName.class);
+      accessors.put(
+          accessor.getSimpleName().toString(),
+          className != null ? className.value() : accessor.getSimpleName().toString());
+    }
+    return accessors;
+  }
+
+  /**
+   * Obfuscated class names start with a prefix derived from the bundle and the method, so they
+   * don't clash with the classes of other stylesheets, even from other compilations, and don't
+   * change between builds. The prefix has a fixed length, so prefix and counter can't run into
+   * another name.
+   */
+  private static String prefix(ExecutableElement method) {
+    String hash =
+        ResourceCache.key(
+            ((TypeElement) method.getEnclosingElement()).getQualifiedName().toString(),
+            method.getSimpleName().toString());
+    String prefix = Long.toString(Long.parseLong(hash.substring(0, 6), 16), 36);
+    return "G" + "0".repeat(5 - prefix.length()) + prefix;
+  }
+
+  /**
+   * Resolves a {@code url()} reference, relative ones against the stylesheet and absolute ones on
+   * the classpath. Returns null for references that can't be embedded, such as remote or missing
+   * resources.
+   */
+  private URL resolveUrl(URL stylesheet, String url) {
+    if (!LOCAL_URL.matcher(url).matches()) {
+      return null;
+    }
+    if (url.startsWith("/")) {
+      return context.resourceOracle.findResource(url.substring(1));
+    }
+    try {
+      URL resolved = new URL(stylesheet, url);
+      if ("file".equals(resolved.getProtocol())
+          && !Files.isRegularFile(Paths.get(resolved.toURI()))) {
+        return null;
+      }
+      return resolved;
+    } catch (MalformedURLException | URISyntaxException e) {
+      return null;
+    }
+  }
+
+  private ResourceContent readReference(URL url) {
+    try {
+      return read(url);
+    } catch (IOException e) {
+      // not embedded, the browser will report it
+      return null;
+    }
+  }
+
+  /**
+   * Text, such as an {@code @import}ed stylesheet, is left to the browser, as is content of an
+   * unknown type.
+   */
+  private static boolean isEmbeddable(String mimeType) {
+    return !mimeType.equals(MimeTypes.UNKNOWN) && !mimeType.startsWith("text/");
+  }
+
+  private static String toString(ResourceContent content) throws IOException {
+    StringWriter out = new StringWriter();
+    try (Reader reader = content.openReader()) {
+      reader.transferTo(out);
+    }
+    return out.toString();
+  }
+}
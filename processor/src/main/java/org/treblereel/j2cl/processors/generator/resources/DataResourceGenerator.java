@@ -16,57 +16,57 @@
 
 package org.treblereel.j2cl.processors.generator.resources;
 
-import freemarker.template.Template;
-import freemarker.template.TemplateException;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
+import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
-import javax.lang.model.element.TypeElement;
 import org.treblereel.j2cl.processors.common.resources.DataResource;
 import org.treblereel.j2cl.processors.context.AptContext;
-import org.treblereel.j2cl.processors.exception.GenerationException;
 
-class DataResourceGenerator extends AbstractResourceGenerator {
+class DataResourceGenerator extends EncodingResourceGenerator {
 
-  private Template template;
+  private final MimeTypes mimeTypes;
 
-  DataResourceGenerator(AptContext context) {
-    super(context, DataResource.class, null);
+  DataResourceGenerator(
+      AptContext context,
+      ExternalResources externalResources,
+      SharedValues sharedValues,
+      MimeTypes mimeTypes) {
+    super(context, DataResource.class, null, "dataresource.ftlh", externalResources, sharedValues);
+    this.mimeTypes = mimeTypes;
   }
 
   @Override
-  void initializer(Map<String, Object> root, TypeElement clientBundle, ExecutableElement method) {
-    Map<String, Object> definition = new HashMap<>();
-    definition.put("name", method.getSimpleName().toString());
-
+  Initializer initializer(ExecutableElement method) {
+    String name = method.getSimpleName().toString();
+    Element bundle = method.getEnclosingElement();
     DataResource.MimeType mimeTypeAnnotation = method.getAnnotation(DataResource.MimeType.class);
     String mimeType = mimeTypeAnnotation != null ? mimeTypeAnnotation.value() : null;
-    URL resource = getResource(method, null);
-    byte[] data = readURLAsBytes(resource);
-    try {
-      String finalMimeType =
-          (mimeType != null) ? mimeType : resource.openConnection().getContentType();
-      String base64Contents = "data:" + finalMimeType + ";base64," + toBase64(data);
-      String encoded = write(base64Contents, method, s -> "return " + s);
-      definition.put("impl", encoded);
-    } catch (IOException e) {
-      throw new GenerationException(e);
-    }
+    return (content, external) -> {
+      Map<String, Object> definition = new HashMap<>();
+      definition.put("name", name);
 
-    StringOutputStream os = new StringOutputStream();
-    try (Writer out = new OutputStreamWriter(os, StandardCharsets.UTF_8)) {
-      if (template == null) {
-        template = cfg.getTemplate("dataresource.ftlh");
+      if (external != null) {
+        String url = externalResources.add(external, ExternalResources.extension(content), content);
+        definition.put("impl", (Fragment) out -> writeUrl(out, "return ", url));
+        return render(definition);
       }
-      template.process(definition, out);
-      root.put("initializer", os.toString());
-    } catch (TemplateException | IOException e) {
-      throw new GenerationException(e);
-    }
+
+      String finalMimeType = (mimeType != null) ? mimeType : mimeTypes.of(content);
+      Fragment value =
+          value(
+              bundle,
+              valueKey("dataUrl", finalMimeType, content.getDigest()),
+              content,
+              () ->
+                  out -> {
+                    try (InputStream input = content.openStream()) {
+                      writeDataUrlLiteral(out, finalMimeType, input);
+                    }
+                  });
+      definition.put("impl", statement("return ", value));
+      return render(definition);
+    };
   }
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.generator.resources;
+
+import java.net.URL;
+import java.util.concurrent.Callable;
+import javax.lang.model.element.ExecutableElement;
+import org.treblereel.j2cl.processors.common.resources.ResourcePrototype;
+import org.treblereel.j2cl.processors.common.resources.ResourcePrototype.DefaultExtensions;
+import org.treblereel.j2cl.processors.context.AptContext;
+
+/**
+ * Generators whose resources are read and encoded off the processor thread, by the {@link
+ * Initializer} of the method, and that can be externalized.
+ */
+abstract class EncodingResourceGenerator extends AbstractResourceGenerator {
+
+  EncodingResourceGenerator(
+      AptContext context,
+      Class<? extends ResourcePrototype> prototype,
+      DefaultExtensions defaultExtensions,
+      String initializerTemplateName,
+      ExternalResources externalResources,
+      SharedValues sharedValues) {
+    super(
+        context,
+        prototype,
+        defaultExtensions,
+        initializerTemplateName,
+        externalResources,
+        sharedValues);
+  }
+
+  /** The returned task reads the resource and encodes it, unless its value is in the cache. */
+  @Override
+  Callable<Fragment> prepare(ExecutableElement method, URL artifactResource) {
+    URL resource = resolve(method, artifactResource);
+    Initializer initializer = initializer(method);
+    ExternalResources.Location location = location(method);
+
+    return () -> {
+      ResourceContent content = read(resource);
+      boolean external =
+          location != null && externalResources.isExternal(location, content.getLength());
+      return initializer.apply(content, external ? location : null);
+    };
+  }
+
+  /**
+   * Returns where the resource of the method is written if it's externalized, or null if the
+   * generator doesn't support it.
+   */
+  ExternalResources.Location location(ExecutableElement method) {
+    if (externalResources == null) {
+      checkNotExternalized(method);
+      return null;
+    }
+    return externalResources.location(method);
+  }
+
+  /**
+   * Returns the function that generates the initializer of the method. It's called on the processor
+   * thread, so annotation values have to be read here, while the function itself may run on any
+   * thread.
+   */
+  abstract Initializer initializer(ExecutableElement method);
+
+  interface Initializer {
+
+    /** {@code external} is where the resource is written if it's externalized, null otherwise. */
+    Fragment apply(ResourceContent content, ExternalResources.Location external) throws Exception;
+  }
+}
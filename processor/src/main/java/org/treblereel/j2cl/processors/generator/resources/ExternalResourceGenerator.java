@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.generator.resources;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.lang.model.element.ExecutableElement;
+import org.treblereel.j2cl.processors.common.resources.ExternalDataResource;
+import org.treblereel.j2cl.processors.common.resources.ExternalTextResource;
+import org.treblereel.j2cl.processors.common.resources.ResourcePrototype;
+import org.treblereel.j2cl.processors.context.AptContext;
+
+/**
+ * Generates {@link ExternalTextResource}s and {@link ExternalDataResource}s. Their resources are
+ * always written to the class output, the bundle only holds their url.
+ */
+class ExternalResourceGenerator extends EncodingResourceGenerator {
+
+  private ExternalResourceGenerator(
+      AptContext context,
+      Class<? extends ResourcePrototype> prototype,
+      String initializerTemplateName,
+      ExternalResources externalResources) {
+    super(
+        context,
+        prototype,
+        prototype.getAnnotation(ResourcePrototype.DefaultExtensions.class),
+        initializerTemplateName,
+        externalResources,
+        null);
+  }
+
+  static ExternalResourceGenerator text(AptContext context, ExternalResources externalResources) {
+    return new ExternalResourceGenerator(
+        context, ExternalTextResource.class, "externaltextresource.ftlh", externalResources);
+  }
+
+  static ExternalResourceGenerator data(AptContext context, ExternalResources externalResources) {
+    return new ExternalResourceGenerator(
+        context, ExternalDataResource.class, "externaldataresource.ftlh", externalResources);
+  }
+
+  @Override
+  ExternalResources.Location location(ExecutableElement method) {
+    return externalResources.location(method, true);
+  }
+
+  @Override
+  Initializer initializer(ExecutableElement method) {
+    String name = method.getSimpleName().toString();
+    return (content, external) -> {
+      Map<String, Object> definition = new HashMap<>();
+      definition.put("name", name);
+      definition.put(
+          "url",
+          escape(externalResources.add(external, ExternalResources.extension(content), content)));
+      return render(definition);
+    };
+  }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.generator.resources;
+
+import com.google.common.hash.Hashing;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import org.treblereel.j2cl.processors.common.resources.ClientBundle;
+import org.treblereel.j2cl.processors.common.resources.ExternalDataResource;
+import org.treblereel.j2cl.processors.common.resources.ExternalTextResource;
+import org.treblereel.j2cl.processors.context.AptContext;
+import org.treblereel.j2cl.processors.exception.GenerationException;
+
+/**
+ * Resources that are written to the class output instead of being embedded, either because they are
+ * annotated with {@link ClientBundle.Externalize}, because they are bigger than {@value
+ * #THRESHOLD_OPTION} bytes, or because they are fetched at runtime, as {@link
+ * ExternalTextResource}s and {@link ExternalDataResource}s are. Files are named after the hash of
+ * their content, so they can be cached forever, and put next to their bundle. Encoding tasks only
+ * register files, they are written by {@link #write()} on the processor thread, since the Filer
+ * isn't thread safe.
+ */
+final class ExternalResources {
+
+  static final String THRESHOLD_OPTION = "gwt3.resources.externalize";
+
+  /** Length of the hash in file names, 128 bits are plenty to tell resources apart. */
+  private static final int HASH_LENGTH = 32;
+
+  private final AptContext context;
+
+  /** -1 if only annotated resources are externalized. */
+  private final long threshold;
+
+  /** Files registered since the last {@link #write()}, keyed by their path. */
+  private final Map<String, File> files = new ConcurrentHashMap<>();
+
+  /** Paths written in previous rounds, the Filer refuses to create a file twice. */
+  private final Set<String> written = new HashSet<>();
+
+  ExternalResources(AptContext context) {
+    this.context = context;
+    String threshold = context.getProcessingEnv().getOptions().get(THRESHOLD_OPTION);
+    try {
+      this.threshold = threshold != null ? Long.parseLong(threshold) : -1;
+    } catch (NumberFormatException e) {
+      throw new GenerationException("-A" + THRESHOLD_OPTION + " must be a number of bytes", e);
+    }
+  }
+
+  /**
+   * Returns where the resource of the method goes if it's externalized, it has to be called on the
+   * processor thread.
+   */
+  Location location(ExecutableElement method) {
+    return location(method, method.getAnnotation(ClientBundle.Externalize.class) != null);
+  }
+
+  /** Like {@link #location(ExecutableElement)}, {@code always} externalizes the resource. */
+  Location location(ExecutableElement method, boolean always) {
+    Element bundle = method.getEnclosingElement();
+    String pkg =
+        context
+            .getProcessingEnv()
+            .getElementUtils()
+            .getPackageOf(bundle)
+            .getQualifiedName()
+            .toString();
+    return new Location(bundle, pkg, always);
+  }
+
+  /** Whether a resource of that length at the location is externalized. */
+  boolean isExternal(Location location, long length) {
+    return location.always || (threshold >= 0 && length > threshold);
+  }
+
+  /** Registers the content as a file and returns its url, relative to the class output. */
+  String add(Location location, String extension, ResourceContent content) {
+    return add(location, content.getDigest(), extension, content.getLength(), content::openStream);
+  }
+
+  /** Registers the bytes as a file and returns its url, relative to the class output. */
+  String add(Location location, String extension, byte[] bytes) {
+    return add(
+        location,
+        Hashing.sha256().hashBytes(bytes).toString(),
+        extension,
+        bytes.length,
+        () -> new ByteArrayInputStream(bytes));
+  }
+
+  private String add(
+      Location location, String digest, String extension, long length, Content content) {
+    String name = digest.substring(0, HASH_LENGTH) + ".cache." + extension;
+    String path = location.pkg.isEmpty() ? name : location.pkg.replace('.', '/') + "/" + name;
+    files
+        .computeIfAbsent(
+            path,
+            key -> {
+              context.stats.increment("resources.externalized");
+              context.stats.count("resources.bytesExternalized", length);
+              return new File(location.pkg, name, content);
+            })
+        .addOrigin(location.bundle);
+    return path;
+  }
+
+  /** Writes the registered files to the class output. */
+  void write() {
+    try {
+      for (Map.Entry<String, File> entry : files.entrySet()) {
+        if (written.add(entry.getKey())) {
+          entry.getValue().write();
+        }
+      }
+    } finally {
+      files.clear();
+    }
+  }
+
+  /**
+   * The extension of the resource name, a {@code .gz} suffix is dropped if the content was
+   * decompressed when it was read.
+   */
+  static String extension(ResourceContent content) throws IOException {
+    String name = content.getName();
+    if (name.endsWith(".gz") && !isGzip(content)) {
+      name = name.substring(0, name.length() - 3);
+    }
+    int dot = name.lastIndexOf('.');
+    return dot != -1 && dot < name.length() - 1 ? name.substring(dot + 1) : "bin";
+  }
+
+  private static boolean isGzip(ResourceContent content) throws IOException {
+    try (InputStream input = content.openStream()) {
+      return input.read() == 0x1f && input.read() == 0x8b;
+    }
+  }
+
+  /** The bundle a resource belongs to and its package. */
+  static final class Location {
+
+    private final Element bundle;
+    private final String pkg;
+    private final boolean always;
+
+    private Location(Element bundle, String pkg, boolean always) {
+      this.bundle = bundle;
+      this.pkg = pkg;
+      this.always = always;
+    }
+  }
+
+  @FunctionalInterface
+  private interface Content {
+
+    InputStream open() throws IOException;
+  }
+
+  private final class File {
+
+    private final String pkg;
+    private final String name;
+    private final Content content;
+    private final Set<Element> origins = new LinkedHashSet<>();
+
+    private File(String pkg, String name, Content content) {
+      this.pkg = pkg;
+      this.name = name;
+      this.content = content;
+    }
+
+    private synchronized void addOrigin(Element bundle) {
+      origins.add(bundle);
+    }
+
+    private synchronized void write() {
+      try {
+        FileObject file =
+            context
+                .getProcessingEnv()
+                .getFiler()
+                .createResource(
+                    StandardLocation.CLASS_OUTPUT, pkg, name, origins.toArray(new Element[0]));
+        try (InputStream input = content.open();
+            OutputStream output = file.openOutputStream()) {
+          input.transferTo(output);
+        }
+      } catch (IOException e) {
+        throw new GenerationException("Unable to write " + name + " to the class output", e);
+      }
+    }
+  }
+}
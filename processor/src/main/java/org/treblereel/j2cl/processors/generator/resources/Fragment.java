@@ -0,0 +1,42 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.generator.resources;
+
+import freemarker.core.Environment;
+import freemarker.template.TemplateDirectiveBody;
+import freemarker.template.TemplateDirectiveModel;
+import freemarker.template.TemplateModel;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * A piece of generated code that is written straight into the output of the template that uses it
+ * (as {@code <@name/>}), so big resources never have to be materialized as a single string.
+ */
+@FunctionalInterface
+interface Fragment extends TemplateDirectiveModel {
+
+  void writeTo(Writer out) throws IOException;
+
+  @Override
+  default void execute(
+      Environment env, Map params, TemplateModel[] loopVars, TemplateDirectiveBody body)
+      throws IOException {
+    writeTo(env.getOut());
+  }
+}
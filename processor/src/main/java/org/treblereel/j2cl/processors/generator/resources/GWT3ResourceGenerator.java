@@ -16,25 +16,29 @@
 
 package org.treblereel.j2cl.processors.generator.resources;
 
-import freemarker.template.Configuration;
 import freemarker.template.Template;
-import freemarker.template.TemplateException;
-import freemarker.template.TemplateExceptionHandler;
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.io.Writer;
-import java.nio.charset.StandardCharsets;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import javax.annotation.processing.FilerException;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.ElementFilter;
 import javax.lang.model.util.Elements;
@@ -42,7 +46,10 @@ import javax.lang.model.util.Types;
 import javax.tools.JavaFileObject;
 import org.treblereel.j2cl.processors.annotations.GWT3Resource;
 import org.treblereel.j2cl.processors.common.resources.ClientBundle;
+import org.treblereel.j2cl.processors.common.resources.CssResource;
 import org.treblereel.j2cl.processors.common.resources.DataResource;
+import org.treblereel.j2cl.processors.common.resources.ExternalDataResource;
+import org.treblereel.j2cl.processors.common.resources.ExternalTextResource;
 import org.treblereel.j2cl.processors.common.resources.ImageResource;
 import org.treblereel.j2cl.processors.common.resources.TextResource;
 import org.treblereel.j2cl.processors.context.AptContext;
@@ -51,64 +58,99 @@ import org.treblereel.j2cl.processors.generator.AbstractGenerator;
 
 public class GWT3ResourceGenerator extends AbstractGenerator {
 
-  protected final Configuration cfg = new Configuration(Configuration.VERSION_2_3_29);
-
-  {
-    cfg.setClassForTemplateLoading(this.getClass(), "/templates/resources");
-    cfg.setDefaultEncoding("UTF-8");
-    cfg.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
-    cfg.setLogTemplateExceptions(false);
-    cfg.setWrapUncheckedExceptions(true);
-    cfg.setFallbackOnNullLoopVariable(false);
-  }
+  public static final String MAVEN_REPOSITORY_OPTION = MavenArtifactResolver.REPOSITORY_OPTION;
+  public static final String MAVEN_OFFLINE_OPTION = MavenArtifactResolver.OFFLINE_OPTION;
+  public static final String IMAGE_OPTIMIZE_OPTION = ImageResourceGenerator.OPTIMIZE_OPTION;
+  public static final String IMAGE_JPEG_QUALITY_OPTION = ImageResourceGenerator.JPEG_QUALITY_OPTION;
+  public static final String EXTERNALIZE_OPTION = ExternalResources.THRESHOLD_OPTION;
 
   private final Types types;
   private final Elements elements;
 
-  private final TypeMirror clientBundle;
+  /** Keyed by qualified name, type mirrors can't be kept across rounds. */
+  private final Map<String, AbstractResourceGenerator> generators = new HashMap<>();
+
+  private final ImageResourceGenerator imageResourceGenerator;
+
+  private final ExternalResources externalResources;
 
-  private Template temp;
+  private final SharedValues sharedValues;
 
-  private final TypeMirror textResource;
-  private final TypeMirror dataResource;
-  private final TypeMirror imageResource;
+  /** Mime types detected in this processor run. */
+  private final MimeTypes mimeTypes = new MimeTypes();
 
-  private final Map<TypeMirror, AbstractResourceGenerator> generators = new HashMap<>();
+  /** Resources of the round that are read straight from maven artifacts. */
+  private Map<ExecutableElement, URL> artifactResources = Collections.emptyMap();
 
   public GWT3ResourceGenerator(AptContext context) {
     super(context, GWT3Resource.class);
     this.types = context.getProcessingEnv().getTypeUtils();
     this.elements = context.getProcessingEnv().getElementUtils();
 
-    this.clientBundle = elements.getTypeElement(ClientBundle.class.getCanonicalName()).asType();
-    this.textResource = elements.getTypeElement(TextResource.class.getCanonicalName()).asType();
-    this.dataResource = elements.getTypeElement(DataResource.class.getCanonicalName()).asType();
-    this.imageResource = elements.getTypeElement(ImageResource.class.getCanonicalName()).asType();
-    generators.put(textResource, new TextResourceGenerator(context));
-    generators.put(dataResource, new DataResourceGenerator(context));
-    generators.put(imageResource, new ImageResourceGenerator(context));
+    this.externalResources = new ExternalResources(context);
+    this.sharedValues = new SharedValues(context);
+    generators.put(
+        TextResource.class.getCanonicalName(), new TextResourceGenerator(context, sharedValues));
+    generators.put(
+        CssResource.class.getCanonicalName(), new CssResourceGenerator(context, mimeTypes));
+    generators.put(
+        DataResource.class.getCanonicalName(),
+        new DataResourceGenerator(context, externalResources, sharedValues, mimeTypes));
+    this.imageResourceGenerator =
+        new ImageResourceGenerator(context, externalResources, sharedValues, mimeTypes);
+    generators.put(
+        ExternalTextResource.class.getCanonicalName(),
+        ExternalResourceGenerator.text(context, externalResources));
+    generators.put(
+        ExternalDataResource.class.getCanonicalName(),
+        ExternalResourceGenerator.data(context, externalResources));
+    generators.put(ImageResource.class.getCanonicalName(), imageResourceGenerator);
   }
 
   @Override
   public void generate(Set<Element> elements) {
     checkIfMavenArtifcatsAsSourcePresented();
-    elements.stream().map(this::validate).forEach(this::generate);
+    ForkJoinPool pool = new ForkJoinPool();
+    try {
+      Map<TypeElement, Map<ExecutableElement, Future<Fragment>>> bundles = new LinkedHashMap<>();
+      Map<TypeElement, Future<ImageResourceGenerator.Sprite>> sprites = new HashMap<>();
+      elements.stream()
+          .map(this::validate)
+          .forEach(
+              clientBundle ->
+                  bundles.put(clientBundle, processFields(pool, clientBundle, sprites)));
+      // values shared between resources are only known once every task of the round is done
+      bundles.values().forEach(initializers -> initializers.values().forEach(this::await));
+      sprites.values().forEach(this::await);
+      bundles.forEach(
+          (clientBundle, initializers) ->
+              generate(clientBundle, initializers, sprites.get(clientBundle)));
+      sharedValues.write();
+      externalResources.write();
+    } finally {
+      pool.shutdownNow();
+    }
   }
 
   private void checkIfMavenArtifcatsAsSourcePresented() {
-    Set<ExecutableElement> withMavenArtifact =
-        (Set<ExecutableElement>)
-            context
-                .getRoundEnv()
-                .getElementsAnnotatedWith(ClientBundle.MavenArtifactSource.class)
-                .stream()
-                .collect(Collectors.toSet());
-    if (!withMavenArtifact.isEmpty()) {
-      new MavenArtifactSourceProcessor(context).process(withMavenArtifact);
-    }
+    Set<? extends Element> withMavenArtifact =
+        context
+            .getRoundEnv()
+            .getElementsAnnotatedWithAny(
+                Set.of(
+                    ClientBundle.MavenArtifactSource.class,
+                    ClientBundle.MavenArtifactSources.class));
+    artifactResources =
+        withMavenArtifact.isEmpty()
+            ? Collections.emptyMap()
+            : new MavenArtifactSourceProcessor(context).process(withMavenArtifact);
   }
 
-  private void generate(TypeElement clientBundle) {
+  /** Initializers of images packed into the sprite are null, they come from the sprite. */
+  private void generate(
+      TypeElement clientBundle,
+      Map<ExecutableElement, Future<Fragment>> initializers,
+      Future<ImageResourceGenerator.Sprite> sprite) {
     Map<String, Object> root = new HashMap<>();
     String pkg = elements.getPackageOf(clientBundle).getQualifiedName().toString();
     String className = classImplName(clientBundle);
@@ -118,29 +160,122 @@ public class GWT3ResourceGenerator extends AbstractGenerator {
     root.put("className", className);
     root.put("parent", parent);
     root.put("resources", new ArrayList<String>());
-    root.put("methods", new ArrayList<String>());
+    root.put("methods", new ArrayList<Fragment>());
+    if (sprite != null && join(sprite).type != null) {
+      ((List<Fragment>) root.get("methods")).add(join(sprite).type);
+    }
 
-    processFields(root, clientBundle);
+    initializers.forEach(
+        (method, initializer) ->
+            getGenerator(method.getReturnType())
+                .generate(
+                    root,
+                    method,
+                    initializer != null
+                        ? join(initializer)
+                        : join(sprite).initializers.get(method)));
 
-    write(root, fullClassName(clientBundle) + "Impl");
+    write(root, fullClassName(clientBundle) + "Impl", clientBundle);
   }
 
-  private void processFields(Map<String, Object> root, TypeElement clientBundle) {
+  /**
+   * Resolves the resources of the bundle on the processor thread and submits their encoding to the
+   * pool, so resources of all bundles of a round are read and encoded in parallel. The images of a
+   * {@link ClientBundle.Sprite} bundle are packed by a single task.
+   */
+  private Map<ExecutableElement, Future<Fragment>> processFields(
+      ForkJoinPool pool,
+      TypeElement clientBundle,
+      Map<TypeElement, Future<ImageResourceGenerator.Sprite>> sprites) {
+    boolean sprite = clientBundle.getAnnotation(ClientBundle.Sprite.class) != null;
+    Map<ExecutableElement, Future<Fragment>> initializers = new LinkedHashMap<>();
+    List<ExecutableElement> images = new ArrayList<>();
     ElementFilter.methodsIn(clientBundle.getEnclosedElements()).stream()
         .filter(method -> method.getParameters().isEmpty())
         .forEach(
             method -> {
-              TypeMirror rtrn = method.getReturnType();
-              if (generators.containsKey(rtrn)) {
-                generators.get(rtrn).generate(root, clientBundle, method);
+              AbstractResourceGenerator generator = getGenerator(method.getReturnType());
+              if (sprite && generator == imageResourceGenerator) {
+                images.add(method);
+                initializers.put(method, null);
+              } else if (generator != null) {
+                Callable<Fragment> task = generator.prepare(method, artifactResources.get(method));
+                initializers.put(method, pool.submit(failingWith(describe(method), task)));
               }
             });
+    if (!images.isEmpty()) {
+      Callable<ImageResourceGenerator.Sprite> task =
+          imageResourceGenerator.prepareSprite(images, artifactResources);
+      sprites.put(
+          clientBundle,
+          pool.submit(failingWith("the sprite of " + clientBundle.getQualifiedName(), task)));
+    }
+    return initializers;
+  }
+
+  /**
+   * Returns the generator of the resource type, or of the resource type it extends, e.g. a {@link
+   * CssResource} with accessor methods.
+   */
+  private AbstractResourceGenerator getGenerator(TypeMirror type) {
+    AbstractResourceGenerator generator = generators.get(types.erasure(type).toString());
+    if (generator != null || type.getKind() != TypeKind.DECLARED) {
+      return generator;
+    }
+    for (Map.Entry<String, AbstractResourceGenerator> entry : generators.entrySet()) {
+      TypeElement resource = elements.getTypeElement(entry.getKey());
+      if (resource != null && types.isSubtype(types.erasure(type), resource.asType())) {
+        return entry.getValue();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Tasks run on the pool, so their failures don't tell which resource was generated: the message
+   * is prefixed with it.
+   */
+  private static <T> Callable<T> failingWith(String resource, Callable<T> task) {
+    return () -> {
+      try {
+        return task.call();
+      } catch (Exception e) {
+        throw new GenerationException("Unable to generate " + resource + ": " + e.getMessage(), e);
+      }
+    };
+  }
+
+  private static String describe(ExecutableElement method) {
+    return method.getEnclosingElement() + "." + method;
+  }
+
+  /** Waits for the task, if there is one, and rethrows its failure. */
+  private void await(Future<?> task) {
+    if (task != null) {
+      join(task);
+    }
+  }
+
+  private static <T> T join(Future<T> task) {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GenerationException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new GenerationException(e.getCause());
+    }
   }
 
   private TypeElement validate(Element element) {
     if (!element.getKind().isInterface()) {
       throw new Error("GWT3Resource annotation can be used only on interfaces");
     }
+    TypeMirror clientBundle =
+        elements.getTypeElement(ClientBundle.class.getCanonicalName()).asType();
     if (!types.isSubtype(element.asType(), clientBundle)) {
       throw new Error(
           "GWT3Resource annotation can be used only on interfaces that extends ClientBundle");
@@ -152,21 +287,22 @@ public class GWT3ResourceGenerator extends AbstractGenerator {
     return (TypeElement) element;
   }
 
-  protected void write(Map<String, Object> root, String fileName) {
-    StringOutputStream os = new StringOutputStream();
-    try (Writer out = new OutputStreamWriter(os, StandardCharsets.UTF_8)) {
-      if (temp == null) {
-        temp = cfg.getTemplate("clientbundle.ftlh");
-      }
-      temp.process(root, out);
-      JavaFileObject sourceFile = context.getProcessingEnv().getFiler().createSourceFile(fileName);
-      try (Writer writer = sourceFile.openWriter()) {
-        writer.write(os.toString());
+  /**
+   * Renders the bundle straight into the source file, initializers are streamed into it as the
+   * template reaches them.
+   */
+  protected void write(Map<String, Object> root, String fileName, TypeElement clientBundle) {
+    try {
+      Template template = context.templates.get("clientbundle.ftlh");
+      JavaFileObject sourceFile =
+          context.getProcessingEnv().getFiler().createSourceFile(fileName, clientBundle);
+      try (Writer writer = new BufferedWriter(sourceFile.openWriter())) {
+        context.templates.process(template, root, writer);
       }
     } catch (FilerException e) {
       System.out.println("FilerException: " + e.getMessage());
       throw new GenerationException(e);
-    } catch (TemplateException | IOException e) {
+    } catch (IOException e) {
       throw new GenerationException(e);
     }
   }
@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.generator.resources;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Lossless palette reduction. Images with at most 256 distinct colors are converted to an indexed
+ * image with the smallest bit depth their palette fits in, which PNG and GIF store with 1 to 8 bits
+ * per pixel instead of 32. Fully transparent pixels are all mapped to one palette entry, since
+ * their color is never visible.
+ */
+final class ImagePalette {
+
+  private static final int MAX_COLORS = 256;
+
+  private ImagePalette() {}
+
+  /**
+   * Returns the indexed image, or null if it has too many colors, more than 8 bits a sample or is
+   * not in the sRGB color space. {@link BufferedImage#getRGB} converts other color spaces to sRGB,
+   * which would change the pixels of a grayscale image.
+   */
+  static BufferedImage reduce(BufferedImage image) {
+    if (!image.getColorModel().getColorSpace().isCS_sRGB()) {
+      return null;
+    }
+    for (int size : image.getColorModel().getComponentSize()) {
+      if (size > 8) {
+        return null;
+      }
+    }
+    int width = image.getWidth();
+    int height = image.getHeight();
+    int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+    Map<Integer, Integer> palette = new LinkedHashMap<>();
+    for (int i = 0; i < pixels.length; i++) {
+      if (pixels[i] >>> 24 == 0) {
+        pixels[i] = 0;
+      }
+      if (palette.putIfAbsent(pixels[i], palette.size()) == null && palette.size() > MAX_COLORS) {
+        return null;
+      }
+    }
+
+    int colors = palette.size();
+    byte[] r = new byte[colors];
+    byte[] g = new byte[colors];
+    byte[] b = new byte[colors];
+    byte[] a = new byte[colors];
+    palette.forEach(
+        (color, index) -> {
+          int argb = color;
+          a[index] = (byte) (argb >>> 24);
+          r[index] = (byte) (argb >> 16);
+          g[index] = (byte) (argb >> 8);
+          b[index] = (byte) argb;
+        });
+    int bits = colors <= 2 ? 1 : colors <= 4 ? 2 : colors <= 16 ? 4 : 8;
+    IndexColorModel colorModel = new IndexColorModel(bits, colors, r, g, b, a);
+    BufferedImage indexed =
+        new BufferedImage(
+            width,
+            height,
+            bits == 8 ? BufferedImage.TYPE_BYTE_INDEXED : BufferedImage.TYPE_BYTE_BINARY,
+            colorModel);
+    WritableRaster raster = indexed.getRaster();
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        raster.setSample(x, y, 0, palette.get(pixels[y * width + x]));
+      }
+    }
+    return indexed;
+  }
+}
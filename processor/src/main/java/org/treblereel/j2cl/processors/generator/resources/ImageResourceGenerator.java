@@ -18,86 +18,506 @@ package org.treblereel.j2cl.processors.generator.resources;
 
 import static org.treblereel.j2cl.processors.common.resources.ImageResource.ImageOptions;
 
-import freemarker.template.Template;
-import freemarker.template.TemplateException;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
-import java.net.URISyntaxException;
+import java.io.InputStream;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
-import javax.lang.model.element.TypeElement;
+import org.treblereel.j2cl.processors.common.resources.ClientBundle;
 import org.treblereel.j2cl.processors.common.resources.ImageResource;
 import org.treblereel.j2cl.processors.common.resources.ResourcePrototype;
 import org.treblereel.j2cl.processors.context.AptContext;
 import org.treblereel.j2cl.processors.exception.GenerationException;
+import org.treblereel.j2cl.processors.resource.ResourceCache;
 
-class ImageResourceGenerator extends AbstractResourceGenerator {
+/**
+ * Embeds images as data urls. Images are scaled down to the size requested by {@link ImageOptions}.
+ * With {@value #OPTIMIZE_OPTION} PNGs are recompressed at the highest deflate level without their
+ * ancillary chunks, and JPEGs are re-encoded when a quality is set by {@link
+ * ImageOptions#jpegQuality()} or {@value #JPEG_QUALITY_OPTION}, and images with up to 256 colors
+ * are converted to indexed PNG or GIF. A re-encoded image that isn't scaled is only embedded if
+ * it's smaller than the original, the result is stored in the resource cache. Externalized images
+ * are written to the class output as they would have been embedded.
+ */
+class ImageResourceGenerator extends EncodingResourceGenerator {
+
+  static final String OPTIMIZE_OPTION = "gwt3.image.optimize";
+  static final String JPEG_QUALITY_OPTION = "gwt3.image.jpegQuality";
+
+  /** Name of the class, nested in the bundle, that holds the sprite. */
+  private static final String SPRITE_CLASS = "Sprite";
 
-  private Template template;
+  private static final String SPRITE_TEMPLATE = "sprite.ftlh";
 
-  ImageResourceGenerator(AptContext context) {
+  /** Quality of scaled JPEGs if none is set. */
+  private static final int DEFAULT_JPEG_QUALITY = 90;
+
+  private final boolean optimize;
+  private final int jpegQuality;
+  private final MimeTypes mimeTypes;
+
+  ImageResourceGenerator(
+      AptContext context,
+      ExternalResources externalResources,
+      SharedValues sharedValues,
+      MimeTypes mimeTypes) {
     super(
         context,
         ImageResource.class,
-        ImageResource.class.getAnnotation(ResourcePrototype.DefaultExtensions.class));
+        ImageResource.class.getAnnotation(ResourcePrototype.DefaultExtensions.class),
+        "imageresource.ftlh",
+        externalResources,
+        sharedValues);
+    Map<String, String> options = context.getProcessingEnv().getOptions();
+    this.optimize = Boolean.parseBoolean(options.get(OPTIMIZE_OPTION));
+    this.jpegQuality =
+        options.containsKey(JPEG_QUALITY_OPTION)
+            ? checkJpegQuality(options.get(JPEG_QUALITY_OPTION), "-A" + JPEG_QUALITY_OPTION)
+            : -1;
+    this.mimeTypes = mimeTypes;
+  }
+
+  private int getJpegQuality(ExecutableElement method) {
+    ImageOptions imageOptions = method.getAnnotation(ImageOptions.class);
+    if (imageOptions != null && imageOptions.jpegQuality() != -1) {
+      return checkJpegQuality(
+          String.valueOf(imageOptions.jpegQuality()),
+          method.getEnclosingElement() + "." + method.getSimpleName());
+    }
+    return jpegQuality;
+  }
+
+  private static int checkJpegQuality(String value, String origin) {
+    try {
+      int quality = Integer.parseInt(value);
+      if (quality >= 0 && quality <= 100) {
+        return quality;
+      }
+    } catch (NumberFormatException e) {
+      // reported below
+    }
+    throw new GenerationException("JPEG quality must be from 0 to 100 at " + origin);
   }
 
   @Override
-  void initializer(Map<String, Object> root, TypeElement clientBundle, ExecutableElement method) {
-    Map<String, Object> definition = new HashMap<>();
-    definition.put("name", method.getSimpleName().toString());
+  Initializer initializer(ExecutableElement method) {
+    String name = method.getSimpleName().toString();
+    Element bundle = method.getEnclosingElement();
+    ImageOptions imageOptions = method.getAnnotation(ImageOptions.class);
+    int jpegQuality = getJpegQuality(method);
+    return (content, external) -> {
+      URL resource = content.getUrl();
+      Map<String, Object> definition = new HashMap<>();
+      definition.put("name", name);
+
+      try {
+        String mimeType = mimeTypes.of(content);
+        Header header = readHeader(content);
+        int[] size = getSize(header, imageOptions);
+        int width = size[0];
+        int height = size[1];
+        definition.put("width", String.valueOf(width));
+        definition.put("height", String.valueOf(height));
 
-    URL resource = getResource(method, defaultExtensions.value());
+        int[] scaled = getScaledSize(header, imageOptions);
+        boolean scale = scaled[0] < header.width || scaled[1] < header.height;
+        boolean reencode =
+            scale || (optimize && !header.isJpeg()) || (jpegQuality != -1 && header.isJpeg());
+        if (external != null) {
+          Encoded encoded = reencode ? reencode(content, header, scale, scaled, jpegQuality) : null;
+          String url =
+              encoded != null
+                  ? externalResources.add(
+                      external, encoded.mimeType.substring("image/".length()), encoded.bytes)
+                  : externalResources.add(external, ExternalResources.extension(content), content);
+          definition.put("encoded", (Fragment) out -> writeUrl(out, "String encoded = ", url));
+        } else {
+          // an image that isn't re-encoded has the same value as a DataResource of the file
+          String key =
+              reencode
+                  ? valueKey(
+                      "image",
+                      String.valueOf(scaled[0]),
+                      String.valueOf(scaled[1]),
+                      String.valueOf(optimize),
+                      String.valueOf(jpegQuality),
+                      content.getDigest())
+                  : valueKey("dataUrl", mimeType, content.getDigest());
+          Fragment value =
+              value(
+                  bundle,
+                  key,
+                  content,
+                  () -> {
+                    Encoded encoded =
+                        reencode ? reencode(content, header, scale, scaled, jpegQuality) : null;
+                    if (encoded != null) {
+                      return out ->
+                          writeDataUrlLiteral(
+                              out, encoded.mimeType, new ByteArrayInputStream(encoded.bytes));
+                    }
+                    return out -> {
+                      try (InputStream input = content.openStream()) {
+                        writeDataUrlLiteral(out, mimeType, input);
+                      }
+                    };
+                  });
+          definition.put("encoded", statement("String encoded =  ", value));
+        }
+        return render(definition);
+      } catch (IOException e) {
+        throw new GenerationException("Unable to read " + resource, e);
+      }
+    };
+  }
+
+  /**
+   * Packs the images of the methods into one sprite. Like {@link #prepare}, it has to be called on
+   * the processor thread and returns a task that can run on any thread. JPEGs, animations, images
+   * outside the sRGB color space, which the sprite would convert, and images annotated with {@link
+   * ClientBundle.Externalize} are generated as usual. Images are never scaled up, an image packed
+   * with a bigger size in its options keeps its natural size. The sprite is stored in the resource
+   * cache, keyed by the templates and the content, size and position of its images.
+   */
+  Callable<Sprite> prepareSprite(
+      List<ExecutableElement> methods, Map<ExecutableElement, URL> artifactResources) {
+    Map<ExecutableElement, URL> resources = new LinkedHashMap<>();
+    Map<ExecutableElement, Callable<Fragment>> standalone = new HashMap<>();
+    Map<ExecutableElement, ImageOptions> imageOptions = new HashMap<>();
+    Set<ExecutableElement> externalized = new HashSet<>();
+    for (ExecutableElement method : methods) {
+      if (method.getAnnotation(ClientBundle.Externalize.class) != null) {
+        externalized.add(method);
+      }
+      resources.put(method, resolve(method, artifactResources.get(method)));
+      standalone.put(method, prepare(method, artifactResources.get(method)));
+      imageOptions.put(method, method.getAnnotation(ImageOptions.class));
+    }
+    // the templates aren't thread safe, their digests are taken on the processor thread
+    String initializerTemplateDigest = getInitializerTemplateDigest();
+    String spriteTemplateDigest =
+        ResourceCache.key(SPRITE_TEMPLATE, context.templates.get(SPRITE_TEMPLATE).toString());
+    return () -> {
+      Map<ExecutableElement, Fragment> initializers = new LinkedHashMap<>();
+      List<ExecutableElement> packed = new ArrayList<>();
+      List<ResourceContent> contents = new ArrayList<>();
+      List<int[]> sizes = new ArrayList<>();
+      for (Map.Entry<ExecutableElement, URL> resource : resources.entrySet()) {
+        ExecutableElement method = resource.getKey();
+        if (externalized.contains(method)) {
+          initializers.put(method, standalone.get(method).call());
+          continue;
+        }
+        ResourceContent content = read(resource.getValue());
+        Header header = readHeader(content);
+        if (header.isJpeg() || !header.srgb || isAnimated(content)) {
+          initializers.put(method, standalone.get(method).call());
+        } else {
+          initializers.put(method, null);
+          packed.add(method);
+          contents.add(content);
+          sizes.add(getScaledSize(header, imageOptions.get(method)));
+        }
+      }
+      if (packed.isEmpty()) {
+        return new Sprite(null, initializers);
+      }
+
+      SpriteLayout layout =
+          SpriteLayout.pack(
+              sizes.stream().mapToInt(size -> size[0]).toArray(),
+              sizes.stream().mapToInt(size -> size[1]).toArray());
+      List<String> parts = new ArrayList<>();
+      parts.add("sprite");
+      parts.add(initializerTemplateDigest);
+      parts.add(spriteTemplateDigest);
+      parts.add(String.valueOf(optimize));
+      for (int i = 0; i < packed.size(); i++) {
+        parts.add(contents.get(i).getDigest());
+        parts.add(sizes.get(i)[0] + "x" + sizes.get(i)[1]);
+        parts.add(layout.getLeft(i) + "," + layout.getTop(i));
+      }
+      Fragment type =
+          cached(
+              cacheKey(parts.toArray(new String[0])), () -> renderSprite(layout, contents, sizes));
+      context.stats.increment("images.sprites");
+      context.stats.count("images.spriteImages", packed.size());
+
+      for (int i = 0; i < packed.size(); i++) {
+        Map<String, Object> definition = new HashMap<>();
+        definition.put("name", packed.get(i).getSimpleName().toString());
+        definition.put("width", String.valueOf(sizes.get(i)[0]));
+        definition.put("height", String.valueOf(sizes.get(i)[1]));
+        definition.put("left", String.valueOf(layout.getLeft(i)));
+        definition.put("top", String.valueOf(layout.getTop(i)));
+        definition.put(
+            "encoded",
+            (Fragment) out -> out.write("String encoded = " + SPRITE_CLASS + ".encoded;"));
+        initializers.put(packed.get(i), render(definition));
+      }
+      return new Sprite(type, initializers);
+    };
+  }
+
+  private Fragment renderSprite(
+      SpriteLayout layout, List<ResourceContent> contents, List<int[]> sizes) throws IOException {
+    BufferedImage sprite =
+        new BufferedImage(layout.getWidth(), layout.getHeight(), BufferedImage.TYPE_INT_ARGB);
+    Graphics2D graphics = sprite.createGraphics();
     try {
-      Path imagePath = Paths.get(resource.toURI());
-      String mimeType = String.format("data:%s;base64,", Files.probeContentType(imagePath));
-      setSize(method, imagePath, definition);
-
-      byte[] data = readURLAsBytes(resource);
-      String base64Contents = mimeType + toBase64(data);
-      String encoded = write(base64Contents, method, s -> "String encoded =  " + s);
-      definition.put("encoded", encoded);
-      StringOutputStream os = new StringOutputStream();
-      try (Writer out = new OutputStreamWriter(os, StandardCharsets.UTF_8)) {
-        if (template == null) {
-          template = cfg.getTemplate("imageresource.ftlh");
+      graphics.setRenderingHint(
+          RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+      for (int i = 0; i < contents.size(); i++) {
+        BufferedImage image = decode(contents.get(i));
+        int width = sizes.get(i)[0];
+        int height = sizes.get(i)[1];
+        if (width < image.getWidth() || height < image.getHeight()) {
+          image = ImageScaler.scale(image, width, height);
         }
-        template.process(definition, out);
-        root.put("initializer", os.toString());
-      } catch (TemplateException | IOException e) {
-        throw new GenerationException(e);
+        graphics.drawImage(image, layout.getLeft(i), layout.getTop(i), width, height, null);
       }
-    } catch (IOException e) {
-      throw new GenerationException("Unable to determine mime type for " + resource, e);
-    } catch (URISyntaxException e) {
-      throw new GenerationException("Unable to determine mime type for " + resource, e);
+    } finally {
+      graphics.dispose();
     }
+    Encoded encoded = encodeLossless(sprite);
+    Map<String, Object> definition = new HashMap<>();
+    definition.put("name", SPRITE_CLASS);
+    definition.put(
+        "encoded",
+        (Fragment)
+            out ->
+                writeDataUrl(
+                    out,
+                    "static final String encoded = ",
+                    encoded.mimeType,
+                    new ByteArrayInputStream(encoded.bytes)));
+    return process(context.templates.get(SPRITE_TEMPLATE), definition);
   }
 
-  private static void setSize(
-      ExecutableElement method, Path imagePath, Map<String, Object> definition) throws IOException {
-    BufferedImage image = ImageIO.read(imagePath.toFile());
-    int width = image.getWidth();
-    int height = image.getHeight();
-    ImageOptions imageOptions = method.getAnnotation(ImageOptions.class);
+  /**
+   * The size of the image, as requested by the options. If only one dimension is set, the aspect
+   * ratio is kept.
+   */
+  private static int[] getSize(Header header, ImageOptions imageOptions) {
+    int width = header.width;
+    int height = header.height;
     if (imageOptions != null) {
-      if (imageOptions.width() != -1) {
+      if (imageOptions.width() > 0 && imageOptions.height() > 0) {
         width = imageOptions.width();
-      }
-      if (imageOptions.height() != -1) {
         height = imageOptions.height();
+      } else if (imageOptions.width() > 0) {
+        width = imageOptions.width();
+        height = Math.max(1, Math.round((float) header.height * width / header.width));
+      } else if (imageOptions.height() > 0) {
+        height = imageOptions.height();
+        width = Math.max(1, Math.round((float) header.width * height / header.height));
       }
     }
-    definition.put("width", String.valueOf(width));
-    definition.put("height", String.valueOf(height));
+    return new int[] {width, height};
+  }
+
+  /**
+   * The size the pixels are scaled to, the requested size clamped to the natural one in each
+   * dimension, since images are never scaled up. An embedded image is displayed at the requested
+   * size, an image in a sprite at this one.
+   */
+  private static int[] getScaledSize(Header header, ImageOptions imageOptions) {
+    int[] size = getSize(header, imageOptions);
+    return new int[] {Math.min(size[0], header.width), Math.min(size[1], header.height)};
+  }
+
+  /**
+   * Reads the format and the size from the image header, the pixels aren't decoded. The stream is
+   * cached in memory, so nothing is written to the ImageIO temp directory.
+   */
+  private static Header readHeader(ResourceContent content) throws IOException {
+    try (ImageInputStream input = new MemoryCacheImageInputStream(content.openStream())) {
+      ImageReader reader = getReader(input, content);
+      try {
+        reader.setInput(input, true, true);
+        ImageTypeSpecifier type = reader.getRawImageType(0);
+        boolean srgb = type == null || type.getColorModel().getColorSpace().isCS_sRGB();
+        return new Header(reader.getFormatName(), reader.getWidth(0), reader.getHeight(0), srgb);
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  /**
+   * Decodes the image, scales it down if requested and re-encodes it, as JPEG if it was one and as
+   * PNG otherwise. With {@value #OPTIMIZE_OPTION} images that fit a palette are also written as
+   * indexed PNG and GIF, the smallest one wins. Returns null, so the original is embedded, for
+   * animations, which can't be re-encoded without losing frames, and if an image that isn't scaled
+   * doesn't get smaller. A scaled image is always returned, so its pixels match the reported size.
+   */
+  private Encoded reencode(
+      ResourceContent content, Header header, boolean scale, int[] size, int jpegQuality)
+      throws IOException {
+    if (isAnimated(content)) {
+      return null;
+    }
+    BufferedImage image = decode(content);
+    if (scale) {
+      image = ImageScaler.scale(image, size[0], size[1]);
+    }
+    Encoded encoded;
+    if (header.isJpeg()) {
+      encoded = encode(image, "jpeg", jpegQuality != -1 ? jpegQuality : DEFAULT_JPEG_QUALITY);
+    } else {
+      encoded = encodeLossless(image);
+    }
+    if (!scale && encoded.bytes.length >= content.getLength()) {
+      return null;
+    }
+    context.stats.increment(scale ? "images.scaled" : "images.optimized");
+    context.stats.count(
+        "images.bytesSaved", Math.max(0, content.getLength() - encoded.bytes.length));
+    return encoded;
+  }
+
+  /**
+   * Encodes the image as PNG, with {@value #OPTIMIZE_OPTION} images that fit a palette are also
+   * written as indexed PNG and GIF, the smallest one wins.
+   */
+  private Encoded encodeLossless(BufferedImage image) throws IOException {
+    Encoded encoded = encode(image, "png", -1);
+    BufferedImage indexed = optimize ? ImagePalette.reduce(image) : null;
+    if (indexed != null) {
+      encoded = smallest(encoded, encode(indexed, "png", -1));
+      if (indexed.getColorModel().getTransparency() != Transparency.TRANSLUCENT) {
+        encoded = smallest(encoded, encode(indexed, "gif", -1));
+      }
+    }
+    return encoded;
+  }
+
+  private static boolean isAnimated(ResourceContent content) throws IOException {
+    try (ImageInputStream input = new MemoryCacheImageInputStream(content.openStream())) {
+      ImageReader reader = getReader(input, content);
+      try {
+        reader.setInput(input, false, true);
+        return reader.getNumImages(true) > 1;
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  private static BufferedImage decode(ResourceContent content) throws IOException {
+    try (ImageInputStream input = new MemoryCacheImageInputStream(content.openStream())) {
+      ImageReader reader = getReader(input, content);
+      try {
+        reader.setInput(input, true, true);
+        return reader.read(0);
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  private static Encoded smallest(Encoded encoded, Encoded other) {
+    return other.bytes.length < encoded.bytes.length ? other : encoded;
+  }
+
+  /**
+   * PNGs are written at the highest deflate level. Images are written without metadata, so the
+   * ancillary chunks of the original, e.g. text, time and ICC profiles, are dropped.
+   */
+  private Encoded encode(BufferedImage image, String format, int jpegQuality) throws IOException {
+    ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ImageOutputStream output = new MemoryCacheImageOutputStream(bytes)) {
+      writer.setOutput(output);
+      ImageWriteParam param = writer.getDefaultWriteParam();
+      if (format.equals("jpeg")) {
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(jpegQuality / 100f);
+      } else if (format.equals("png") && optimize && param.canWriteCompressed()) {
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(0f);
+      }
+      writer.write(null, new IIOImage(image, null, null), param);
+    } finally {
+      writer.dispose();
+    }
+    return new Encoded(bytes.toByteArray(), "image/" + format);
+  }
+
+  private static ImageReader getReader(ImageInputStream input, ResourceContent content) {
+    Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+    if (!readers.hasNext()) {
+      throw new GenerationException("Unsupported image format " + content.getUrl());
+    }
+    return readers.next();
+  }
+
+  /** The sprite class of a bundle and the initializers of its images. */
+  static final class Sprite {
+
+    /** Null if no image is packed. */
+    final Fragment type;
+
+    final Map<ExecutableElement, Fragment> initializers;
+
+    private Sprite(Fragment type, Map<ExecutableElement, Fragment> initializers) {
+      this.type = type;
+      this.initializers = initializers;
+    }
+  }
+
+  private static final class Encoded {
+
+    private final byte[] bytes;
+    private final String mimeType;
+
+    private Encoded(byte[] bytes, String mimeType) {
+      this.bytes = bytes;
+      this.mimeType = mimeType;
+    }
+  }
+
+  private static final class Header {
+
+    private final String format;
+    private final int width;
+    private final int height;
+    private final boolean srgb;
+
+    private Header(String format, int width, int height, boolean srgb) {
+      this.format = format;
+      this.width = width;
+      this.height = height;
+      this.srgb = srgb;
+    }
+
+    private boolean isJpeg() {
+      return format.equalsIgnoreCase("jpeg") || format.equalsIgnoreCase("jpg");
+    }
   }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.generator.resources;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * High quality downscaling. A single bicubic step samples only a few source pixels per target
+ * pixel, so big reductions alias. The image is halved with bilinear steps, which average all source
+ * pixels, while it's at least twice the target size, the remaining step is bicubic.
+ */
+final class ImageScaler {
+
+  private ImageScaler() {}
+
+  static BufferedImage scale(BufferedImage image, int width, int height) {
+    int type =
+        image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+    BufferedImage current = image;
+    int w = image.getWidth();
+    int h = image.getHeight();
+    do {
+      boolean last = w / 2 < width && h / 2 < height;
+      w = w / 2 >= width ? w / 2 : width;
+      h = h / 2 >= height ? h / 2 : height;
+      if (last) {
+        w = width;
+        h = height;
+      }
+      current =
+          draw(
+              current,
+              w,
+              h,
+              type,
+              last
+                  ? RenderingHints.VALUE_INTERPOLATION_BICUBIC
+                  : RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+    } while (w != width || h != height);
+    return current;
+  }
+
+  private static BufferedImage draw(
+      BufferedImage image, int width, int height, int type, Object interpolation) {
+    BufferedImage result = new BufferedImage(width, height, type);
+    Graphics2D graphics = result.createGraphics();
+    try {
+      graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+      graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+      graphics.setRenderingHint(
+          RenderingHints.KEY_ALPHA_INTERPOLATION, RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
+      graphics.drawImage(image, 0, 0, width, height, null);
+    } finally {
+      graphics.dispose();
+    }
+    return result;
+  }
+}
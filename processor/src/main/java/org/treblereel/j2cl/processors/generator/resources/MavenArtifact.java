@@ -16,6 +16,8 @@
 
 package org.treblereel.j2cl.processors.generator.resources;
 
+import java.net.URL;
+import java.util.List;
 import java.util.Objects;
 import javax.tools.FileObject;
 import org.treblereel.j2cl.processors.common.resources.ClientBundle;
@@ -90,6 +92,18 @@ class MavenArtifact {
     mavenArtifactDownloader.copyResourceTo(path, dst, unzip);
   }
 
+  URL getResource(String path, boolean unzip) {
+    return mavenArtifactDownloader.getResource(path, unzip);
+  }
+
+  List<String> entries(String glob) {
+    return mavenArtifactDownloader.entries(glob);
+  }
+
+  MavenArtifactDownloader getMavenArtifactDownloader() {
+    return mavenArtifactDownloader;
+  }
+
   @Override
   public String toString() {
     return "MavenArtifact{"
@@ -16,141 +16,227 @@
 
 package org.treblereel.j2cl.processors.generator.resources;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.PushbackInputStream;
-import java.util.Collections;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import javax.tools.FileObject;
-import org.eclipse.aether.AbstractRepositoryListener;
-import org.eclipse.aether.DefaultRepositorySystemSession;
-import org.eclipse.aether.RepositorySystem;
-import org.eclipse.aether.RepositorySystemSession;
-import org.eclipse.aether.artifact.Artifact;
-import org.eclipse.aether.artifact.DefaultArtifact;
-import org.eclipse.aether.repository.LocalRepository;
-import org.eclipse.aether.repository.RemoteRepository;
-import org.eclipse.aether.resolution.ArtifactRequest;
-import org.eclipse.aether.resolution.ArtifactResolutionException;
-import org.eclipse.aether.resolution.ArtifactResult;
-import org.eclipse.aether.supplier.RepositorySystemSupplier;
-import org.eclipse.aether.transfer.AbstractTransferListener;
 import org.treblereel.j2cl.processors.exception.GenerationException;
 
-class MavenArtifactDownloader {
+/**
+ * Extracts entries from a resolved artifact. The archive is opened once and kept open until the
+ * downloader is closed, {@link ZipFile} indexes its central directory so every lookup is a map hit.
+ * Entries are copied as bytes, so binary resources are kept intact, or read in place through a
+ * {@code jar:} url.
+ */
+class MavenArtifactDownloader implements AutoCloseable {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
 
-  private final File tempDir;
   private final MavenArtifact mavenArtifact;
+  private final File artifactFile;
 
-  private Artifact artifact;
+  private ZipFile zipFile;
 
-  MavenArtifactDownloader(File tempDir, MavenArtifact mavenArtifact) {
-    this.tempDir = tempDir;
+  MavenArtifactDownloader(MavenArtifact mavenArtifact, File artifactFile) {
     this.mavenArtifact = mavenArtifact;
+    this.artifactFile = artifactFile;
   }
 
   void copyResourceTo(String path, FileObject dst, boolean unzip) {
-    if (artifact == null) {
-      download();
-    }
-    try (ZipFile zipFile = new ZipFile(artifact.getFile())) {
-      ZipEntry entry = zipFile.getEntry(path);
-      if (entry != null) {
-        if (unzip && !checkIfZip(zipFile.getInputStream(entry))) {
-          throw new GenerationException("Resource with a path " + path + " isn't a GZIP");
-        }
-        try (BufferedReader reader =
-                new BufferedReader(
-                    new InputStreamReader(
-                        unzip
-                            ? new GZIPInputStream(zipFile.getInputStream(entry))
-                            : zipFile.getInputStream(entry)));
-            BufferedWriter bufferedWriter =
-                new BufferedWriter(new OutputStreamWriter(dst.openOutputStream()))) {
-
-          char[] buffer = new char[1024];
-          int charsRead;
-          while ((charsRead = reader.read(buffer)) != -1) {
-            bufferedWriter.write(buffer, 0, charsRead);
-          }
-          bufferedWriter.flush();
-        }
-      } else {
-        throw new GenerationException("Unable to find resource " + path + " at " + artifact);
+    ZipEntry entry = getEntry(path);
+    try (InputStream in = open(entry, unzip);
+        OutputStream out = dst.openOutputStream()) {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
       }
-    } catch (Exception e) {
+    } catch (IOException e) {
       throw new GenerationException(e);
     }
   }
 
-  private boolean checkIfZip(InputStream inputStream) {
-    if (!(inputStream instanceof PushbackInputStream)) {
-      inputStream = new PushbackInputStream(inputStream, 2);
-    }
-
-    byte[] signature = new byte[2];
+  /**
+   * Returns a url that reads the entry straight from the artifact. With {@code unzip} the entry is
+   * decompressed while it's read.
+   */
+  URL getResource(String path, boolean unzip) {
+    ZipEntry entry = getEntry(path);
     try {
-      int bytesRead = inputStream.read(signature);
-      ((PushbackInputStream) inputStream).unread(signature, 0, bytesRead);
-      return bytesRead == 2 && signature[0] == (byte) 0x1f && signature[1] == (byte) 0x8b;
+      if (unzip) {
+        open(entry, true).close();
+      }
+      URL url = new URL("jar:" + artifactFile.toURI().toASCIIString() + "!/" + encode(path));
+      return unzip ? gunzip(url) : url;
     } catch (IOException e) {
       throw new GenerationException(e);
     }
   }
 
-  private void download() {
-    RepositorySystem system = newRepositorySystem();
-    RepositorySystemSession session = newSession(system);
-    Artifact artifact =
-        new DefaultArtifact(
-            String.format(
-                "%s:%s:%s",
-                mavenArtifact.getGroupId(),
-                mavenArtifact.getArtifactId(),
-                mavenArtifact.getVersion()));
-
-    ArtifactRequest request = new ArtifactRequest();
-    request.setArtifact(artifact);
-    request.setRepositories(
-        Collections.singletonList(
-            new RemoteRepository.Builder(
-                    mavenArtifact.getRepositoryId(),
-                    mavenArtifact.getRepositoryType(),
-                    mavenArtifact.getRepositoryUrl())
-                .build()));
-
+  /**
+   * Percent-encodes the entry name, the {@code jar:} handler decodes it again, so names with e.g. a
+   * space, a '#' or a '%' find their entry.
+   */
+  private static String encode(String path) {
     try {
-      ArtifactResult artifactResult = system.resolveArtifact(session, request);
-      this.artifact = artifactResult.getArtifact();
-    } catch (ArtifactResolutionException e) {
-      throw new GenerationException(e);
-    } finally {
-      system.shutdown();
+      return new URI("file", null, "/" + path, null).toASCIIString().substring("file:/".length());
+    } catch (URISyntaxException e) {
+      throw new GenerationException("Wrong resource path " + path, e);
     }
   }
 
-  private RepositorySystem newRepositorySystem() {
-    RepositorySystemSupplier supplier = new RepositorySystemSupplier();
-    return supplier.get();
+  /** Returns the names of all file entries that match the glob. */
+  List<String> entries(String glob) {
+    Pattern pattern = toPattern(glob);
+    return getZipFile().stream()
+        .filter(entry -> !entry.isDirectory())
+        .map(ZipEntry::getName)
+        .filter(name -> pattern.matcher(name).matches())
+        .sorted()
+        .collect(Collectors.toList());
   }
 
-  private RepositorySystemSession newSession(RepositorySystem system) {
-    DefaultRepositorySystemSession session = new DefaultRepositorySystemSession();
-    LocalRepository localRepo = new LocalRepository(tempDir);
-    session.setLocalRepositoryManager(system.newLocalRepositoryManager(session, localRepo));
-    session.setTransferListener(new ConsoleTransferListener());
-    session.setRepositoryListener(new ConsoleRepositoryListener());
-    return session;
+  private ZipEntry getEntry(String path) {
+    ZipEntry entry = getZipFile().getEntry(path);
+    if (entry == null || entry.isDirectory()) {
+      throw new GenerationException("Unable to find resource " + path + " at " + mavenArtifact);
+    }
+    return entry;
   }
 
-  private static class ConsoleTransferListener extends AbstractTransferListener {}
+  private InputStream open(ZipEntry entry, boolean unzip) throws IOException {
+    InputStream in = new BufferedInputStream(getZipFile().getInputStream(entry), BUFFER_SIZE);
+    if (!unzip) {
+      return in;
+    }
+    in.mark(2);
+    int first = in.read();
+    int second = in.read();
+    in.reset();
+    if (first != 0x1f || second != 0x8b) {
+      in.close();
+      throw new GenerationException("Resource with a path " + entry.getName() + " isn't a GZIP");
+    }
+    return new GZIPInputStream(in, BUFFER_SIZE);
+  }
 
-  private static class ConsoleRepositoryListener extends AbstractRepositoryListener {}
+  private ZipFile getZipFile() {
+    if (zipFile == null) {
+      try {
+        zipFile = new ZipFile(artifactFile);
+      } catch (IOException e) {
+        throw new GenerationException("Unable to open " + artifactFile + " of " + mavenArtifact, e);
+      }
+    }
+    return zipFile;
+  }
+
+  /** Wraps the url in one that decompresses its content and drops {@code .gz} from its name. */
+  private static URL gunzip(URL url) throws MalformedURLException {
+    String name =
+        url.getPath().endsWith(".gz")
+            ? url.getPath().substring(0, url.getPath().length() - 3)
+            : url.getPath();
+    return new URL(
+        null,
+        url.toExternalForm(),
+        new URLStreamHandler() {
+          @Override
+          protected URLConnection openConnection(URL u) throws IOException {
+            URLConnection connection = url.openConnection();
+            return new URLConnection(u) {
+              @Override
+              public void connect() throws IOException {
+                connection.connect();
+              }
+
+              @Override
+              public void setUseCaches(boolean useCaches) {
+                connection.setUseCaches(useCaches);
+              }
+
+              @Override
+              public InputStream getInputStream() throws IOException {
+                return new GZIPInputStream(connection.getInputStream(), BUFFER_SIZE);
+              }
+
+              @Override
+              public String getContentType() {
+                String contentType = URLConnection.guessContentTypeFromName(name);
+                return contentType != null ? contentType : "content/unknown";
+              }
+            };
+          }
+        });
+  }
+
+  static boolean isGlob(String path) {
+    return path.indexOf('*') != -1 || path.indexOf('?') != -1;
+  }
+
+  /** Returns the part of the glob up to the last '/' before the first wildcard. */
+  static String base(String glob) {
+    int wildcard = glob.length();
+    for (int i = 0; i < glob.length(); i++) {
+      if (glob.charAt(i) == '*' || glob.charAt(i) == '?') {
+        wildcard = i;
+        break;
+      }
+    }
+    return glob.substring(0, glob.lastIndexOf('/', wildcard) + 1);
+  }
+
+  /**
+   * '**' matches any number of directories, '*' and '?' match any characters, or a single one,
+   * within a path segment.
+   */
+  private static Pattern toPattern(String glob) {
+    StringBuilder regex = new StringBuilder();
+    int literal = 0;
+    for (int i = 0; i < glob.length(); i++) {
+      char c = glob.charAt(i);
+      if (c != '*' && c != '?') {
+        continue;
+      }
+      regex.append(Pattern.quote(glob.substring(literal, i)));
+      if (c == '?') {
+        regex.append("[^/]");
+      } else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+        i++;
+        if (i + 1 < glob.length() && glob.charAt(i + 1) == '/') {
+          i++;
+          regex.append("(?:.*/)?");
+        } else {
+          regex.append(".*");
+        }
+      } else {
+        regex.append("[^/]*");
+      }
+      literal = i + 1;
+    }
+    regex.append(Pattern.quote(glob.substring(literal)));
+    return Pattern.compile(regex.toString());
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (zipFile != null) {
+      zipFile.close();
+      zipFile = null;
+    }
+  }
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.generator.resources;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic;
+import org.eclipse.aether.AbstractRepositoryListener;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositoryEvent;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.repository.RepositoryPolicy;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.supplier.RepositorySystemSupplier;
+import org.treblereel.j2cl.processors.common.resources.ClientBundle;
+import org.treblereel.j2cl.processors.context.ProcessorStats;
+import org.treblereel.j2cl.processors.exception.GenerationException;
+
+/**
+ * Resolves {@link ClientBundle.MavenArtifactSource} artifacts into a persistent local repository,
+ * the user's maven repository unless {@value #REPOSITORY_OPTION} is set, so an artifact is only
+ * downloaded once and its checksums are verified when it is. With {@code -Agwt3.maven.offline=true}
+ * artifacts are resolved from the local repository and {@code file://} repositories only.
+ *
+ * <p>One repository system and session is shared by all artifacts of a run, distinct artifacts are
+ * resolved concurrently on a bounded pool. A downloaded artifact is reported as a note with its
+ * resolution time, one found in the local repository only with {@code -Agwt3.stats=true}, which
+ * also records the time as {@code maven.resolve.<group>:<artifact>:<version>}.
+ */
+class MavenArtifactResolver implements AutoCloseable {
+
+  static final String REPOSITORY_OPTION = "gwt3.maven.repository";
+  static final String OFFLINE_OPTION = "gwt3.maven.offline";
+
+  private static final int MAX_PARALLEL_RESOLUTIONS = 8;
+
+  private final RepositorySystem system;
+  private final DefaultRepositorySystemSession session;
+  private final boolean offline;
+  private final ProcessorStats stats;
+  private final Messager messager;
+
+  /** Coordinates of the artifacts downloaded in this run, the listener runs on the pool. */
+  private final Set<String> downloads = ConcurrentHashMap.newKeySet();
+
+  MavenArtifactResolver(ProcessingEnvironment processingEnv, ProcessorStats stats) {
+    this.stats = stats;
+    this.messager = processingEnv.getMessager();
+    this.system = new RepositorySystemSupplier().get();
+    this.offline = Boolean.parseBoolean(processingEnv.getOptions().get(OFFLINE_OPTION));
+    this.session = new DefaultRepositorySystemSession();
+    LocalRepository localRepo = new LocalRepository(getLocalRepository(processingEnv));
+    session.setLocalRepositoryManager(system.newLocalRepositoryManager(session, localRepo));
+    session.setChecksumPolicy(RepositoryPolicy.CHECKSUM_POLICY_FAIL);
+    session.setOffline(offline);
+    session.setConfigProperty("aether.offline.protocols", "file");
+    session.setRepositoryListener(
+        new AbstractRepositoryListener() {
+          @Override
+          public void artifactDownloaded(RepositoryEvent event) {
+            if (event.getException() == null) {
+              Artifact artifact = event.getArtifact();
+              downloads.add(
+                  artifact.getGroupId()
+                      + ":"
+                      + artifact.getArtifactId()
+                      + ":"
+                      + artifact.getVersion());
+            }
+          }
+        });
+  }
+
+  /**
+   * Resolves the artifacts concurrently, the returned map keeps the order of the artifacts. Notes
+   * are reported on the calling thread, the Messager isn't thread safe.
+   */
+  Map<MavenArtifact, File> resolve(Collection<MavenArtifact> mavenArtifacts) {
+    Map<MavenArtifact, File> result = new LinkedHashMap<>();
+    if (mavenArtifacts.isEmpty()) {
+      return result;
+    }
+    ExecutorService pool =
+        Executors.newFixedThreadPool(Math.min(mavenArtifacts.size(), MAX_PARALLEL_RESOLUTIONS));
+    try (ProcessorStats.Timer timer = stats.start("maven.resolve")) {
+      List<Future<Resolved>> resolved = new ArrayList<>();
+      for (MavenArtifact mavenArtifact : mavenArtifacts) {
+        resolved.add(pool.submit(() -> resolveTimed(mavenArtifact)));
+      }
+      int i = 0;
+      for (MavenArtifact mavenArtifact : mavenArtifacts) {
+        Resolved artifact = resolved.get(i++).get();
+        if (artifact.downloaded) {
+          messager.printMessage(
+              Diagnostic.Kind.NOTE,
+              String.format("Downloaded %s in %d ms", coordinates(mavenArtifact), artifact.millis));
+        } else if (stats.isEnabled()) {
+          messager.printMessage(
+              Diagnostic.Kind.NOTE,
+              String.format("Resolved %s in %d ms", coordinates(mavenArtifact), artifact.millis));
+        }
+        result.put(mavenArtifact, artifact.file);
+      }
+      return result;
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof GenerationException) {
+        throw (GenerationException) e.getCause();
+      }
+      throw new GenerationException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new GenerationException(e);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private Resolved resolveTimed(MavenArtifact mavenArtifact) {
+    long start = System.nanoTime();
+    try (ProcessorStats.Timer timer = stats.start("maven.resolve." + coordinates(mavenArtifact))) {
+      File file = resolve(mavenArtifact);
+      stats.increment("maven.artifacts");
+      boolean downloaded = downloads.contains(coordinates(mavenArtifact));
+      if (downloaded) {
+        stats.increment("maven.downloads");
+      }
+      return new Resolved(file, (System.nanoTime() - start) / 1_000_000, downloaded);
+    }
+  }
+
+  private static String coordinates(MavenArtifact mavenArtifact) {
+    return mavenArtifact.getGroupId()
+        + ":"
+        + mavenArtifact.getArtifactId()
+        + ":"
+        + mavenArtifact.getVersion();
+  }
+
+  private File resolve(MavenArtifact mavenArtifact) {
+    ArtifactRequest request = new ArtifactRequest();
+    request.setArtifact(
+        new DefaultArtifact(
+            String.format(
+                "%s:%s:%s",
+                mavenArtifact.getGroupId(),
+                mavenArtifact.getArtifactId(),
+                mavenArtifact.getVersion())));
+    request.setRepositories(
+        Collections.singletonList(
+            new RemoteRepository.Builder(
+                    mavenArtifact.getRepositoryId(),
+                    mavenArtifact.getRepositoryType(),
+                    mavenArtifact.getRepositoryUrl())
+                .build()));
+    try {
+      return system.resolveArtifact(session, request).getArtifact().getFile();
+    } catch (ArtifactResolutionException e) {
+      if (offline) {
+        throw new GenerationException(
+            "Unable to resolve "
+                + mavenArtifact
+                + " in offline mode, it must be in the local repository or a file:// repository",
+            e);
+      }
+      throw new GenerationException(e);
+    }
+  }
+
+  private static File getLocalRepository(ProcessingEnvironment processingEnv) {
+    String repository = processingEnv.getOptions().get(REPOSITORY_OPTION);
+    if (repository == null) {
+      repository = System.getProperty("maven.repo.local");
+    }
+    if (repository == null) {
+      repository = Paths.get(System.getProperty("user.home"), ".m2", "repository").toString();
+    }
+    return new File(repository);
+  }
+
+  @Override
+  public void close() {
+    system.shutdown();
+  }
+
+  private static final class Resolved {
+
+    private final File file;
+    private final long millis;
+    private final boolean downloaded;
+
+    private Resolved(File file, long millis, boolean downloaded) {
+      this.file = file;
+      this.millis = millis;
+      this.downloaded = downloaded;
+    }
+  }
+}
@@ -16,15 +16,17 @@
 
 package org.treblereel.j2cl.processors.generator.resources;
 
-import com.google.common.io.Files;
-import java.io.File;
 import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
 import java.util.regex.Pattern;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.tools.FileObject;
 import javax.tools.StandardLocation;
@@ -40,103 +42,158 @@ class MavenArtifactSourceProcessor {
     this.context = context;
   }
 
-  void process(Set<ExecutableElement> withMavenArtifact) {
-    final File tempDir = Files.createTempDir();
-    try {
-      final Map<MavenArtifact, Set<ExecutableElement>> mavenArtifacts = new HashMap<>();
+  /**
+   * Resolves the artifacts and copies the resources that are copied to the class output. Resources
+   * of methods without {@code copyTo} aren't copied, they are read from the artifact through the
+   * returned urls.
+   */
+  Map<ExecutableElement, URL> process(Set<? extends Element> withMavenArtifact) {
+    final Map<MavenArtifact, List<Source>> mavenArtifacts = new LinkedHashMap<>();
+    final Map<ExecutableElement, URL> resources = new HashMap<>();
+    try (MavenArtifactResolver resolver =
+        new MavenArtifactResolver(context.getProcessingEnv(), context.stats)) {
       processAnnotations(withMavenArtifact, mavenArtifacts);
-      downloadMavenArtifacts(tempDir, mavenArtifacts);
-      copyResources(mavenArtifacts);
+      downloadMavenArtifacts(resolver, mavenArtifacts);
+      try {
+        copyResources(mavenArtifacts, resources);
+      } finally {
+        for (MavenArtifact mavenArtifact : mavenArtifacts.keySet()) {
+          mavenArtifact.getMavenArtifactDownloader().close();
+        }
+      }
+      return resources;
+    } catch (GenerationException e) {
+      throw e;
     } catch (Exception e) {
       throw new GenerationException(e);
-    } finally {
-      delete(tempDir);
     }
   }
 
   private void processAnnotations(
-      Set<ExecutableElement> withMavenArtifact,
-      Map<MavenArtifact, Set<ExecutableElement>> mavenArtifacts) {
-    for (ExecutableElement executableElement : withMavenArtifact) {
-      ClientBundle.MavenArtifactSource mavenArtifactSource =
-          executableElement.getAnnotation(ClientBundle.MavenArtifactSource.class);
-      MavenArtifact mavenArtifact = new MavenArtifact(mavenArtifactSource);
-      if (!mavenArtifacts.containsKey(mavenArtifact)) {
-        mavenArtifacts.put(mavenArtifact, new HashSet<>());
+      Set<? extends Element> withMavenArtifact, Map<MavenArtifact, List<Source>> mavenArtifacts) {
+    for (Element element : withMavenArtifact) {
+      for (ClientBundle.MavenArtifactSource mavenArtifactSource :
+          element.getAnnotationsByType(ClientBundle.MavenArtifactSource.class)) {
+        if (element.getKind() == ElementKind.METHOD
+            && MavenArtifactDownloader.isGlob(mavenArtifactSource.path())) {
+          throw new GenerationException(
+              "Glob path is only allowed on a bundle type at "
+                  + element.getEnclosingElement()
+                  + "."
+                  + element.getSimpleName());
+        }
+        mavenArtifacts
+            .computeIfAbsent(new MavenArtifact(mavenArtifactSource), k -> new ArrayList<>())
+            .add(new Source(element, mavenArtifactSource));
       }
-      mavenArtifacts.get(mavenArtifact).add(executableElement);
     }
   }
 
   private void downloadMavenArtifacts(
-      File tempDir, Map<MavenArtifact, Set<ExecutableElement>> mavenArtifacts) {
-    for (MavenArtifact mavenArtifact : mavenArtifacts.keySet()) {
-      mavenArtifact.setMavenArtifactDownloader(new MavenArtifactDownloader(tempDir, mavenArtifact));
-    }
+      MavenArtifactResolver resolver, Map<MavenArtifact, List<Source>> mavenArtifacts) {
+    resolver
+        .resolve(mavenArtifacts.keySet())
+        .forEach(
+            (mavenArtifact, file) ->
+                mavenArtifact.setMavenArtifactDownloader(
+                    new MavenArtifactDownloader(mavenArtifact, file)));
   }
 
-  private void copyResources(Map<MavenArtifact, Set<ExecutableElement>> mavenArtifacts) {
-    for (Map.Entry<MavenArtifact, Set<ExecutableElement>> mavenArtifactSetEntry :
-        mavenArtifacts.entrySet()) {
-      for (ExecutableElement executableElement : mavenArtifactSetEntry.getValue()) {
-        ClientBundle.MavenArtifactSource artifactSource =
-            executableElement.getAnnotation(ClientBundle.MavenArtifactSource.class);
+  private void copyResources(
+      Map<MavenArtifact, List<Source>> mavenArtifacts, Map<ExecutableElement, URL> resources) {
+    for (Map.Entry<MavenArtifact, List<Source>> mavenArtifactSetEntry : mavenArtifacts.entrySet()) {
+      MavenArtifact mavenArtifact = mavenArtifactSetEntry.getKey();
+      for (Source source : mavenArtifactSetEntry.getValue()) {
+        ClientBundle.MavenArtifactSource artifactSource = source.annotation;
         String path = artifactSource.path();
-        String copyTo = artifactSource.copyTo().equals("<auto>") ? path : artifactSource.copyTo();
+        boolean auto = artifactSource.copyTo().equals("<auto>");
+        if (MavenArtifactDownloader.isGlob(path)) {
+          copyGlob(mavenArtifact, source, auto);
+          continue;
+        }
+        if (auto && source.element.getKind() == ElementKind.METHOD) {
+          resources.put(
+              (ExecutableElement) source.element,
+              mavenArtifact.getResource(path, artifactSource.unzip()));
+          continue;
+        }
+        String copyTo = auto ? path : artifactSource.copyTo();
 
-        if (artifactSource.copyTo().equals("<auto>")) {
-          checkPath(path, "path", executableElement);
+        if (auto) {
+          checkPath(path, "path", source.element);
         } else {
-          checkPath(copyTo, "copyTo", executableElement);
-        }
-        try {
-          FileObject resource =
-              context
-                  .getProcessingEnv()
-                  .getFiler()
-                  .createResource(
-                      StandardLocation.CLASS_OUTPUT,
-                      "", // no package
-                      copyTo);
-          mavenArtifactSetEntry.getKey().copyResourceTo(path, resource, artifactSource.unzip());
-        } catch (IOException e) {
-          throw new RuntimeException(e);
+          checkPath(copyTo, "copyTo", source.element);
         }
+        copy(mavenArtifact, path, copyTo, source);
       }
     }
   }
 
+  /**
+   * Copies all entries that match the glob, with {@code <auto>} they keep their path, otherwise
+   * their path relative to the base of the glob is resolved against {@code copyTo}.
+   */
+  private void copyGlob(MavenArtifact mavenArtifact, Source source, boolean auto) {
+    String glob = source.annotation.path();
+    List<String> entries = mavenArtifact.entries(glob);
+    if (entries.isEmpty()) {
+      throw new GenerationException(
+          "Unable to find resources matching " + glob + " at " + mavenArtifact);
+    }
+    String base = MavenArtifactDownloader.base(glob);
+    String copyTo = source.annotation.copyTo();
+    if (!copyTo.isEmpty() && !copyTo.endsWith("/")) {
+      copyTo += "/";
+    }
+    for (String entry : entries) {
+      copy(mavenArtifact, entry, auto ? entry : copyTo + entry.substring(base.length()), source);
+    }
+  }
+
+  private void copy(MavenArtifact mavenArtifact, String path, String copyTo, Source source) {
+    try {
+      FileObject resource =
+          context
+              .getProcessingEnv()
+              .getFiler()
+              .createResource(
+                  StandardLocation.CLASS_OUTPUT,
+                  "", // no package
+                  copyTo,
+                  source.element.getKind() == ElementKind.METHOD
+                      ? source.element.getEnclosingElement()
+                      : source.element);
+      mavenArtifact.copyResourceTo(path, resource, source.annotation.unzip());
+    } catch (IOException e) {
+      throw new GenerationException(e);
+    }
+  }
+
   private static final Pattern pattern =
       Pattern.compile("^(?:[a-zA-Z]+(?:\\d*[a-zA-Z_]*)*)(?:\\.[a-zA-Z]+(?:\\d*[a-zA-Z_]*)*)+$");
 
-  private void checkPath(String path, String type, ExecutableElement method) {
+  private void checkPath(String path, String type, Element element) {
     String pkg = path.substring(0, path.lastIndexOf("/")).replaceAll("/", ".");
 
     if (!pattern.matcher(pkg).matches()) {
       throw new GenerationException(
-          "Wrong " + type + " at " + method.getEnclosingElement() + "." + method.getSimpleName());
+          "Wrong "
+              + type
+              + " at "
+              + (element.getKind() == ElementKind.METHOD
+                  ? element.getEnclosingElement() + "." + element.getSimpleName()
+                  : element));
     }
   }
 
-  private void delete(File dir) {
-    Stack<File> stack = new Stack<>();
-    stack.push(dir);
-    while (!stack.isEmpty()) {
-      File file = stack.peek();
-      if (file.isDirectory()) {
-        File[] files = file.listFiles();
-        if (files.length == 0) {
-          stack.pop();
-          file.delete();
-        } else {
-          for (File subFile : files) {
-            stack.push(subFile);
-          }
-        }
-      } else {
-        stack.pop();
-        file.delete();
-      }
+  private static class Source {
+
+    private final Element element;
+    private final ClientBundle.MavenArtifactSource annotation;
+
+    private Source(Element element, ClientBundle.MavenArtifactSource annotation) {
+      this.element = element;
+      this.annotation = annotation;
     }
   }
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.generator.resources;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tells the mime type of a resource from the magic number at the start of its content, or, for
+ * formats without one such as SVG, CSS or scripts, from the extension of its name. Unlike {@link
+ * java.net.URLConnection#getContentType()} or {@link java.nio.file.Files#probeContentType}, the
+ * answer doesn't depend on the platform or on the url scheme, and nothing is read again, the first
+ * bytes are kept by {@link ResourceContent}. Results are memoized by the digest of the content, for
+ * as long as the instance lives; one is shared by the generators of a processor run.
+ */
+final class MimeTypes {
+
+  /** What {@link java.net.URLConnection#getContentType()} returns for unknown content. */
+  static final String UNKNOWN = "content/unknown";
+
+  private static final List<Signature> SIGNATURES = new ArrayList<>();
+
+  private static final Map<String, String> EXTENSIONS = new HashMap<>();
+
+  private final Map<String, String> detected = new ConcurrentHashMap<>();
+
+  static {
+    signature("image/png", 0, 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n');
+    signature("image/gif", 0, "GIF87a");
+    signature("image/gif", 0, "GIF89a");
+    signature("image/jpeg", 0, 0xff, 0xd8, 0xff);
+    signature("image/webp", 0, "RIFF", 8, "WEBP");
+    signature("image/avif", 4, "ftypavif");
+    signature("image/x-icon", 0, 0x00, 0x00, 0x01, 0x00);
+    signature("font/woff", 0, "wOFF");
+    signature("font/woff2", 0, "wOF2");
+    signature("font/otf", 0, "OTTO");
+    signature("font/ttf", 0, 0x00, 0x01, 0x00, 0x00);
+    signature("audio/wav", 0, "RIFF", 8, "WAVE");
+    signature("audio/ogg", 0, "OggS");
+    signature("audio/mpeg", 0, "ID3");
+    signature("video/mp4", 4, "ftyp");
+    signature("video/webm", 0, 0x1a, 0x45, 0xdf, 0xa3);
+    signature("application/pdf", 0, "%PDF-");
+    signature("application/wasm", 0, 0x00, 'a', 's', 'm');
+
+    extensions("image/png", "png");
+    extensions("image/gif", "gif");
+    extensions("image/jpeg", "jpg", "jpeg", "jpe");
+    extensions("image/bmp", "bmp");
+    extensions("image/webp", "webp");
+    extensions("image/avif", "avif");
+    extensions("image/x-icon", "ico");
+    extensions("image/svg+xml", "svg");
+    extensions("font/woff", "woff");
+    extensions("font/woff2", "woff2");
+    extensions("font/otf", "otf");
+    extensions("font/ttf", "ttf");
+    extensions("application/vnd.ms-fontobject", "eot");
+    extensions("audio/wav", "wav");
+    extensions("audio/ogg", "ogg", "oga");
+    extensions("audio/mpeg", "mp3");
+    extensions("video/mp4", "mp4");
+    extensions("video/webm", "webm");
+    extensions("application/pdf", "pdf");
+    extensions("application/wasm", "wasm");
+    extensions("application/json", "json", "map");
+    extensions("application/xml", "xml");
+    extensions("application/zip", "zip");
+    extensions("application/gzip", "gz");
+    extensions("text/css", "css");
+    extensions("text/javascript", "js", "mjs");
+    extensions("text/html", "html", "htm");
+    extensions("text/plain", "txt");
+  }
+
+  /** Returns the mime type of the content, or {@link #UNKNOWN}. */
+  String of(ResourceContent content) {
+    String name = content.getName();
+    int dot = name.lastIndexOf('.');
+    String extension = dot != -1 ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    return detected.computeIfAbsent(
+        content.getDigest() + "." + extension, key -> detect(content.getHead(), extension));
+  }
+
+  private static String detect(byte[] head, String extension) {
+    for (Signature signature : SIGNATURES) {
+      if (signature.matches(head)) {
+        return signature.mimeType;
+      }
+    }
+    return EXTENSIONS.getOrDefault(extension, UNKNOWN);
+  }
+
+  private static void signature(String mimeType, int offset, int... bytes) {
+    SIGNATURES.add(new Signature(mimeType, new int[] {offset}, new int[][] {bytes}));
+  }
+
+  private static void signature(String mimeType, int offset, String magic) {
+    signature(mimeType, new int[] {offset}, magic);
+  }
+
+  private static void signature(
+      String mimeType, int offset, String magic, int otherOffset, String otherMagic) {
+    signature(mimeType, new int[] {offset, otherOffset}, magic, otherMagic);
+  }
+
+  private static void signature(String mimeType, int[] offsets, String... magics) {
+    int[][] parts = new int[magics.length][];
+    for (int i = 0; i < magics.length; i++) {
+      byte[] bytes = magics[i].getBytes(StandardCharsets.US_ASCII);
+      parts[i] = new int[bytes.length];
+      for (int j = 0; j < bytes.length; j++) {
+        parts[i][j] = bytes[j];
+      }
+    }
+    SIGNATURES.add(new Signature(mimeType, offsets, parts));
+  }
+
+  private static void extensions(String mimeType, String... extensions) {
+    for (String extension : extensions) {
+      EXTENSIONS.put(extension, mimeType);
+    }
+  }
+
+  /** Magic bytes at fixed offsets, all of them must match. */
+  private static final class Signature {
+
+    private final String mimeType;
+    private final int[] offsets;
+    private final int[][] parts;
+
+    private Signature(String mimeType, int[] offsets, int[][] parts) {
+      this.mimeType = mimeType;
+      this.offsets = offsets;
+      this.parts = parts;
+    }
+
+    private boolean matches(byte[] head) {
+      for (int i = 0; i < parts.length; i++) {
+        if (head.length < offsets[i] + parts[i].length) {
+          return false;
+        }
+        for (int j = 0; j < parts[i].length; j++) {
+          if ((head[offsets[i] + j] & 0xff) != parts[i][j]) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.generator.resources;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The content of a resource, read once to compute its digest. Resources of up to {@link
+ * #IN_MEMORY_LIMIT} bytes are kept in memory, bigger ones are streamed from their url again every
+ * time they are opened. The content length reported by the connection is never trusted, so {@code
+ * jar:} urls without a known length are read to the end as well. The first {@link #HEAD_LENGTH}
+ * bytes are always kept, so the type of the content can be told without reading it again.
+ */
+final class ResourceContent {
+
+  static final int IN_MEMORY_LIMIT = 1024 * 1024;
+
+  static final int HEAD_LENGTH = 16;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final URL url;
+  private final String digest;
+  private final long length;
+  private final byte[] bytes;
+  private final byte[] head;
+
+  private ResourceContent(URL url, String digest, long length, byte[] bytes, byte[] head) {
+    this.url = url;
+    this.digest = digest;
+    this.length = length;
+    this.bytes = bytes;
+    this.head = head;
+  }
+
+  static ResourceContent read(URL url) throws IOException {
+    Hasher hasher = Hashing.sha256().newHasher();
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    ByteArrayOutputStream head = new ByteArrayOutputStream(HEAD_LENGTH);
+    byte[] chunk = new byte[BUFFER_SIZE];
+    long length = 0;
+    try (InputStream input = open(url)) {
+      int read;
+      while ((read = input.read(chunk)) != -1) {
+        hasher.putBytes(chunk, 0, read);
+        if (head.size() < HEAD_LENGTH) {
+          head.write(chunk, 0, Math.min(read, HEAD_LENGTH - head.size()));
+        }
+        length += read;
+        if (buffer != null) {
+          if (length <= IN_MEMORY_LIMIT) {
+            buffer.write(chunk, 0, read);
+          } else {
+            buffer = null;
+          }
+        }
+      }
+    }
+    return new ResourceContent(
+        url,
+        hasher.hash().toString(),
+        length,
+        buffer != null ? buffer.toByteArray() : null,
+        head.toByteArray());
+  }
+
+  private static InputStream open(URL url) throws IOException {
+    URLConnection connection = url.openConnection();
+    connection.setUseCaches(false);
+    return connection.getInputStream();
+  }
+
+  URL getUrl() {
+    return url;
+  }
+
+  /** sha-256 of the content, in hex. */
+  String getDigest() {
+    return digest;
+  }
+
+  long getLength() {
+    return length;
+  }
+
+  /** Up to {@link #HEAD_LENGTH} bytes from the start of the content. */
+  byte[] getHead() {
+    return head.clone();
+  }
+
+  /** The name of the resource, the last segment of its path. */
+  String getName() {
+    String path = url.getPath();
+    return path.substring(path.lastIndexOf('/') + 1);
+  }
+
+  boolean isInMemory() {
+    return bytes != null;
+  }
+
+  InputStream openStream() throws IOException {
+    return bytes != null ? new ByteArrayInputStream(bytes) : open(url);
+  }
+
+  Reader openReader() throws IOException {
+    return new InputStreamReader(openStream(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.generator.resources;
+
+import com.google.javascript.jscomp.CompilationLevel;
+import com.google.javascript.jscomp.Compiler;
+import com.google.javascript.jscomp.CompilerOptions;
+import com.google.javascript.jscomp.JSError;
+import com.google.javascript.jscomp.Result;
+import com.google.javascript.jscomp.SourceFile;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.StringJoiner;
+import org.treblereel.j2cl.processors.common.resources.TextResource;
+import org.treblereel.j2cl.processors.exception.GenerationException;
+
+/**
+ * Minifies scripts with the Closure Compiler. Scripts are compiled one by one without externs, so
+ * only whitespace only and simple optimizations are supported, which leave global names alone. The
+ * output is in the language of the input and no {@code "use strict"} is added, so the script runs
+ * as it did before.
+ */
+final class ScriptMinifier {
+
+  private ScriptMinifier() {}
+
+  static String minify(String name, String script, TextResource.Minify.Level level) {
+    CompilerOptions options = new CompilerOptions();
+    (level == TextResource.Minify.Level.SIMPLE
+            ? CompilationLevel.SIMPLE_OPTIMIZATIONS
+            : CompilationLevel.WHITESPACE_ONLY)
+        .setOptionsForCompilationLevel(options);
+    options.setLanguageIn(CompilerOptions.LanguageMode.ECMASCRIPT_NEXT);
+    options.setLanguageOut(CompilerOptions.LanguageMode.NO_TRANSPILE);
+    options.setEmitUseStrict(false);
+
+    // errors are reported by the GenerationException, warnings about third party code are noise
+    Compiler compiler = new Compiler(new PrintStream(OutputStream.nullOutputStream()));
+    Result result =
+        compiler.compile(
+            Collections.<SourceFile>emptyList(),
+            Collections.singletonList(SourceFile.fromCode(name, script)),
+            options);
+    if (!result.success) {
+      StringJoiner errors = new StringJoiner("\n");
+      for (JSError error : result.errors) {
+        errors.add(error.toString());
+      }
+      throw new GenerationException("Unable to minify " + name + ":\n" + errors);
+    }
+    return compiler.toSource();
+  }
+}
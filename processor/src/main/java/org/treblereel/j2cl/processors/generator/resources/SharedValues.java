@@ -0,0 +1,183 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.generator.resources;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaFileObject;
+import org.treblereel.j2cl.processors.context.AptContext;
+import org.treblereel.j2cl.processors.exception.GenerationException;
+
+/**
+ * Encoded resources, as string literals, keyed by their content and everything their encoding
+ * depends on. A value used by more than one resource of a round, in the same bundle or in different
+ * ones, is written once, by {@link #write()}, into a holder class that all of them delegate to,
+ * instead of being embedded in every bundle. Values of resources under {@value #MIN_SHARED_LENGTH}
+ * bytes are always embedded, a holder class costs more than a few copies of them.
+ *
+ * <p>The holder is put next to the bundle whose name comes first and named after it, so the output
+ * doesn't depend on the order encoding tasks finish in, and holders of modules that share a package
+ * don't clash.
+ *
+ * <p>Encoding tasks only register values. Whether a value is shared is known once every task of the
+ * round is done, so bundles must be written after that, and holders are written on the processor
+ * thread, since neither the Filer nor the javac model are thread safe.
+ */
+final class SharedValues {
+
+  private static final String CLASS_INFIX = "_SharedResource_";
+
+  static final int MIN_SHARED_LENGTH = 1024;
+
+  /** Length of the hash in class names, 64 bits are plenty to tell the values of a build apart. */
+  private static final int HASH_LENGTH = 16;
+
+  private final AptContext context;
+
+  /** Values registered since the last {@link #write()}, keyed by their key. */
+  private final Map<String, Value> values = new ConcurrentHashMap<>();
+
+  /** Holder classes written in previous rounds, keyed by the key of their value. */
+  private final Map<String, String> written = new HashMap<>();
+
+  SharedValues(AptContext context) {
+    this.context = context;
+  }
+
+  /**
+   * Registers the literal of a resource of the bundle and returns the expression the resource uses,
+   * either the literal itself or a call to the holder of the value if it's shared. {@code length}
+   * is the length of the content of the resource.
+   */
+  Fragment add(Element bundle, String key, long length, Fragment literal) {
+    if (length < MIN_SHARED_LENGTH) {
+      return literal;
+    }
+    values.computeIfAbsent(key, k -> new Value(literal)).addUse(bundle);
+    return out -> {
+      String holder = holder(key);
+      if (holder != null) {
+        out.write(holder + ".value()");
+      } else {
+        literal.writeTo(out);
+      }
+    };
+  }
+
+  /** Writes the holders of the values that are shared. */
+  void write() {
+    try {
+      for (Map.Entry<String, Value> entry : values.entrySet()) {
+        String holder = holder(entry.getKey());
+        if (holder != null && !written.containsKey(entry.getKey())) {
+          entry.getValue().write(holder);
+          written.put(entry.getKey(), holder);
+          context.stats.increment("resources.shared");
+          context.stats.count("resources.deduplicated", entry.getValue().uses - 1);
+        }
+      }
+    } finally {
+      values.clear();
+    }
+  }
+
+  /** The qualified name of the holder of the value, or null if it isn't shared. */
+  private String holder(String key) {
+    String holder = written.get(key);
+    if (holder != null) {
+      return holder;
+    }
+    Value value = values.get(key);
+    if (value == null || value.uses < 2) {
+      return null;
+    }
+    Element first = value.first();
+    String pkg =
+        context
+            .getProcessingEnv()
+            .getElementUtils()
+            .getPackageOf(first)
+            .getQualifiedName()
+            .toString();
+    StringBuilder className = new StringBuilder();
+    if (first.getEnclosingElement().getKind() != ElementKind.PACKAGE) {
+      className.append(first.getEnclosingElement().getSimpleName()).append('_');
+    }
+    className.append(first.getSimpleName()).append(CLASS_INFIX).append(key, 0, HASH_LENGTH);
+    return pkg.isEmpty() ? className.toString() : pkg + "." + className;
+  }
+
+  private final class Value {
+
+    private final Fragment literal;
+    private final Set<Element> origins = new LinkedHashSet<>();
+    private int uses;
+
+    private Value(Fragment literal) {
+      this.literal = literal;
+    }
+
+    private synchronized void addUse(Element bundle) {
+      origins.add(bundle);
+      uses++;
+    }
+
+    /** The bundle whose name comes first. */
+    private synchronized Element first() {
+      return origins.stream()
+          .min(Comparator.comparing(bundle -> ((TypeElement) bundle).getQualifiedName().toString()))
+          .get();
+    }
+
+    private synchronized void write(String holder) {
+      int dot = holder.lastIndexOf('.');
+      Map<String, Object> root = new HashMap<>();
+      root.put("package", holder.substring(0, Math.max(dot, 0)));
+      root.put("className", holder.substring(dot + 1));
+      root.put(
+          "value",
+          (Fragment)
+              out -> {
+                out.write("return ");
+                literal.writeTo(out);
+                out.write(";");
+              });
+      try {
+        JavaFileObject sourceFile =
+            context
+                .getProcessingEnv()
+                .getFiler()
+                .createSourceFile(holder, origins.toArray(new Element[0]));
+        try (Writer writer = new BufferedWriter(sourceFile.openWriter())) {
+          context.templates.process(context.templates.get("sharedresource.ftlh"), root, writer);
+        }
+      } catch (IOException e) {
+        throw new GenerationException("Unable to write " + holder, e);
+      }
+    }
+  }
+}
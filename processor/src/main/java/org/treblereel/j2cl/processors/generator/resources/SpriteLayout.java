@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.generator.resources;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Packs rectangles into a sprite with first fit decreasing height shelves. Rectangles are placed
+ * from the tallest to the lowest, each one on the first shelf with room left, or on a new shelf.
+ * The sprite is about as wide as it's high, but at least as wide as the widest rectangle.
+ */
+final class SpriteLayout {
+
+  private final int[] left;
+  private final int[] top;
+  private final int width;
+  private final int height;
+
+  private SpriteLayout(int[] left, int[] top, int width, int height) {
+    this.left = left;
+    this.top = top;
+    this.width = width;
+    this.height = height;
+  }
+
+  static SpriteLayout pack(int[] widths, int[] heights) {
+    long area = 0;
+    int maxWidth = 0;
+    for (int i = 0; i < widths.length; i++) {
+      area += (long) widths[i] * heights[i];
+      maxWidth = Math.max(maxWidth, widths[i]);
+    }
+    int limit = Math.max(maxWidth, (int) Math.ceil(Math.sqrt(area)));
+
+    List<Integer> order =
+        IntStream.range(0, widths.length)
+            .boxed()
+            .sorted(Comparator.<Integer>comparingInt(i -> heights[i]).reversed())
+            .collect(Collectors.toList());
+    int[] left = new int[widths.length];
+    int[] top = new int[widths.length];
+    // x of the free space and y of each shelf, the first rectangle of a shelf sets its height
+    List<int[]> shelves = new ArrayList<>();
+    int height = 0;
+    int width = 0;
+    for (int i : order) {
+      int[] shelf = null;
+      for (int[] candidate : shelves) {
+        if (candidate[0] + widths[i] <= limit) {
+          shelf = candidate;
+          break;
+        }
+      }
+      if (shelf == null) {
+        shelf = new int[] {0, height};
+        shelves.add(shelf);
+        height += heights[i];
+      }
+      left[i] = shelf[0];
+      top[i] = shelf[1];
+      shelf[0] += widths[i];
+      width = Math.max(width, shelf[0]);
+    }
+    return new SpriteLayout(left, top, width, height);
+  }
+
+  int getLeft(int i) {
+    return left[i];
+  }
+
+  int getTop(int i) {
+    return top[i];
+  }
+
+  int getWidth() {
+    return width;
+  }
+
+  int getHeight() {
+    return height;
+  }
+}
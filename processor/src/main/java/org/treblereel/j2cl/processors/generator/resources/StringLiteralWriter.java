@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.generator.resources;
+
+import java.io.IOException;
+import java.io.Writer;
+import org.apache.commons.text.StringEscapeUtils;
+
+/**
+ * Writes everything it gets as a java string literal. Content of up to {@link #MAX_STRING_CHUNK}
+ * chars becomes a plain literal, anything longer becomes a {@code StringBuilder} chain of chunks,
+ * because a single constant that is too long crashes the compiler. Only one chunk is buffered, so
+ * the memory needed doesn't depend on the size of the content.
+ *
+ * @apiNote chunking scheme from gwt2 generator
+ */
+class StringLiteralWriter extends Writer {
+
+  static final int MAX_STRING_CHUNK = 16383;
+
+  private static final String INDENT = "                                           ";
+
+  private final Writer out;
+  private final StringBuilder chunk = new StringBuilder(MAX_STRING_CHUNK);
+
+  private boolean chained;
+  private boolean closed;
+
+  StringLiteralWriter(Writer out) {
+    this.out = out;
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    while (len > 0) {
+      if (chunk.length() == MAX_STRING_CHUNK) {
+        flushChunk();
+      }
+      int count = Math.min(len, MAX_STRING_CHUNK - chunk.length());
+      chunk.append(cbuf, off, count);
+      off += count;
+      len -= count;
+    }
+  }
+
+  @Override
+  public void write(String str, int off, int len) throws IOException {
+    while (len > 0) {
+      if (chunk.length() == MAX_STRING_CHUNK) {
+        flushChunk();
+      }
+      int count = Math.min(len, MAX_STRING_CHUNK - chunk.length());
+      chunk.append(str, off, off + count);
+      off += count;
+      len -= count;
+    }
+  }
+
+  private void flushChunk() throws IOException {
+    if (!chained) {
+      out.write("new StringBuilder()\n");
+      chained = true;
+    }
+    out.write(INDENT);
+    out.write(".append(\"");
+    StringEscapeUtils.ESCAPE_JAVA.translate(chunk, out);
+    out.write("\")\n");
+    chunk.setLength(0);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  /** Completes the literal, the underlying writer stays open. */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (chained) {
+      if (chunk.length() > 0) {
+        flushChunk();
+      }
+      out.write(INDENT);
+      out.write(".toString()\n");
+    } else {
+      out.write("\"");
+      StringEscapeUtils.ESCAPE_JAVA.translate(chunk, out);
+      out.write("\"");
+    }
+  }
+}
@@ -1,31 +0,0 @@
-/*
- * Copyright © 2023 Treblereel
- *
- * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
- * in compliance with the License. You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software distributed under the License
- * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
- * or implied. See the License for the specific language governing permissions and limitations under
- * the License.
- */
-
-package org.treblereel.j2cl.processors.generator.resources;
-
-import java.io.OutputStream;
-
-public class StringOutputStream extends OutputStream {
-
-  private StringBuilder builder = new StringBuilder();
-
-  @Override
-  public void write(int b) {
-    builder.append((char) b);
-  }
-
-  public String toString() {
-    return builder.toString();
-  }
-}
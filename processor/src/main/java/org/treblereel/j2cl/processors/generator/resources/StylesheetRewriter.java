@@ -0,0 +1,330 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.generator.resources;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Rewrites stylesheets without parsing them into a model. The scanner only knows about comments,
+ * strings, {@code url()} and the text before a {@code {}, which is either a selector or an at-rule,
+ * so it leaves alone any syntax it doesn't understand.
+ */
+final class StylesheetRewriter {
+
+  /** Whitespace next to these characters is dropped. */
+  private static final String SEPARATORS = "{};,>~";
+
+  private StylesheetRewriter() {}
+
+  /**
+   * Drops comments, collapses whitespace and drops the last semicolon of a block. Whitespace before
+   * {@code :} and {@code (} is kept, it separates a pseudo class from its element in a selector and
+   * a keyword from a parenthesized media feature, and so is whitespace around {@code +}, which
+   * {@code calc()} requires.
+   */
+  static String minify(String css) {
+    StringBuilder out = new StringBuilder(css.length());
+    boolean whitespace = false;
+    int i = 0;
+    while (i < css.length()) {
+      char c = css.charAt(i);
+      if (c == '/' && i + 1 < css.length() && css.charAt(i + 1) == '*') {
+        int end = css.indexOf("*/", i + 2);
+        i = end != -1 ? end + 2 : css.length();
+        whitespace = true;
+        continue;
+      }
+      if (Character.isWhitespace(c)) {
+        whitespace = true;
+        i++;
+        continue;
+      }
+      if (whitespace && out.length() > 0) {
+        char last = out.charAt(out.length() - 1);
+        if (SEPARATORS.indexOf(last) == -1
+            && last != ':'
+            && last != '('
+            && SEPARATORS.indexOf(c) == -1
+            && c != ')') {
+          out.append(' ');
+        }
+      }
+      whitespace = false;
+      if (c == '"' || c == '\'') {
+        int end = endOfString(css, i);
+        out.append(css, i, end);
+        i = end;
+        continue;
+      }
+      if (c == '}' && out.length() > 0 && out.charAt(out.length() - 1) == ';') {
+        out.setLength(out.length() - 1);
+      }
+      out.append(c);
+      i++;
+    }
+    return out.toString();
+  }
+
+  /** Returns the references of the {@code url()}s of the stylesheet. */
+  static Set<String> urls(String css) {
+    Set<String> urls = new LinkedHashSet<>();
+    replaceUrls(
+        css,
+        url -> {
+          urls.add(url);
+          return null;
+        });
+    return urls;
+  }
+
+  /**
+   * Replaces the reference of every {@code url()} by what {@code replacement} returns for it,
+   * {@code url()}s it returns null for are kept as they are.
+   */
+  static String replaceUrls(String css, Function<String, String> replacement) {
+    StringBuilder out = new StringBuilder(css.length());
+    int i = 0;
+    while (i < css.length()) {
+      char c = css.charAt(i);
+      if (c == '/' && i + 1 < css.length() && css.charAt(i + 1) == '*') {
+        int end = css.indexOf("*/", i + 2);
+        end = end != -1 ? end + 2 : css.length();
+        out.append(css, i, end);
+        i = end;
+      } else if (c == '"' || c == '\'') {
+        int end = endOfString(css, i);
+        out.append(css, i, end);
+        i = end;
+      } else if (css.regionMatches(true, i, "url(", 0, 4)
+          && (i == 0 || !isNameChar(css.charAt(i - 1)))) {
+        int start = skipWhitespace(css, i + 4);
+        int end;
+        String url;
+        if (start < css.length() && (css.charAt(start) == '"' || css.charAt(start) == '\'')) {
+          end = endOfString(css, start);
+          url = unescape(css.substring(start + 1, Math.max(start + 1, end - 1)));
+          end = skipWhitespace(css, end);
+        } else {
+          end = start;
+          while (end < css.length() && css.charAt(end) != ')') {
+            end++;
+          }
+          url = unescape(css.substring(start, end).trim());
+        }
+        if (end >= css.length() || css.charAt(end) != ')') {
+          // unterminated, the rest is copied as is
+          out.append(css, i, css.length());
+          break;
+        }
+        String replaced = replacement.apply(url);
+        if (replaced != null) {
+          out.append("url(\"").append(replaced).append("\")");
+        } else {
+          out.append(css, i, end + 1);
+        }
+        i = end + 1;
+      } else {
+        out.append(c);
+        i++;
+      }
+    }
+    return out.toString();
+  }
+
+  /** Returns the class names used in the selectors of the stylesheet. */
+  static Set<String> classes(String css) {
+    Set<String> classes = new LinkedHashSet<>();
+    renameClasses(
+        css,
+        name -> {
+          classes.add(name);
+          return null;
+        });
+    return classes;
+  }
+
+  /** Renames the classes of the selectors of the stylesheet that are keys of the map. */
+  static String renameClasses(String css, Map<String, String> names) {
+    return renameClasses(css, names::get);
+  }
+
+  /**
+   * Renames the classes of the selectors to what {@code rename} returns, classes it returns null for
+   * are kept. A selector is the text before a {@code {} since the end of the previous statement or
+   * block that isn't an at-rule.
+   */
+  private static String renameClasses(String css, Function<String, String> rename) {
+    StringBuilder out = new StringBuilder(css.length());
+    int prelude = 0;
+    int i = 0;
+    while (i < css.length()) {
+      char c = css.charAt(i);
+      if (c == '/' && i + 1 < css.length() && css.charAt(i + 1) == '*') {
+        int end = css.indexOf("*/", i + 2);
+        i = end != -1 ? end + 2 : css.length();
+      } else if (c == '"' || c == '\'') {
+        i = endOfString(css, i);
+      } else if (c == ';' || c == '}') {
+        i++;
+        out.append(css, prelude, i);
+        prelude = i;
+      } else if (c == '{') {
+        String text = css.substring(prelude, i);
+        out.append(text.trim().startsWith("@") ? text : renameInSelector(text, rename));
+        out.append(c);
+        i++;
+        prelude = i;
+      } else {
+        i++;
+      }
+    }
+    out.append(css, prelude, css.length());
+    return out.toString();
+  }
+
+  private static String renameInSelector(String selector, Function<String, String> rename) {
+    StringBuilder out = new StringBuilder(selector.length());
+    int i = 0;
+    while (i < selector.length()) {
+      char c = selector.charAt(i);
+      if (c == '/' && i + 1 < selector.length() && selector.charAt(i + 1) == '*') {
+        int end = selector.indexOf("*/", i + 2);
+        end = end != -1 ? end + 2 : selector.length();
+        out.append(selector, i, end);
+        i = end;
+      } else if (c == '"' || c == '\'') {
+        int end = endOfString(selector, i);
+        out.append(selector, i, end);
+        i = end;
+      } else if (c == '[') {
+        // attribute values may contain dots
+        int end = i + 1;
+        while (end < selector.length() && selector.charAt(end) != ']') {
+          end =
+              selector.charAt(end) == '"' || selector.charAt(end) == '\''
+                  ? endOfString(selector, end)
+                  : end + 1;
+        }
+        end = Math.min(end + 1, selector.length());
+        out.append(selector, i, end);
+        i = end;
+      } else if (c == '.' && isNameStart(selector, i + 1)) {
+        int end = endOfName(selector, i + 1);
+        String renamed = rename.apply(unescape(selector.substring(i + 1, end)));
+        out.append('.').append(renamed != null ? renamed : selector.substring(i + 1, end));
+        i = end;
+      } else {
+        out.append(c);
+        i++;
+      }
+    }
+    return out.toString();
+  }
+
+  /** Index after the closing quote of the string that starts at {@code start}. */
+  private static int endOfString(String css, int start) {
+    char quote = css.charAt(start);
+    int i = start + 1;
+    while (i < css.length()) {
+      char c = css.charAt(i);
+      if (c == '\\') {
+        i += 2;
+      } else if (c == quote || c == '\n') {
+        return i + 1;
+      } else {
+        i++;
+      }
+    }
+    return css.length();
+  }
+
+  private static int skipWhitespace(String css, int i) {
+    while (i < css.length() && Character.isWhitespace(css.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private static boolean isNameStart(String css, int i) {
+    if (i >= css.length()) {
+      return false;
+    }
+    char c = css.charAt(i);
+    if (c == '-') {
+      return i + 1 < css.length()
+          && (css.charAt(i + 1) == '-' || !Character.isDigit(css.charAt(i + 1)))
+          && isNameChar(css.charAt(i + 1));
+    }
+    return c == '_' || c == '\\' || Character.isLetter(c) || c > 0x7f;
+  }
+
+  private static int endOfName(String css, int i) {
+    while (i < css.length()) {
+      char c = css.charAt(i);
+      if (c == '\\') {
+        i = Math.min(i + 2, css.length());
+      } else if (isNameChar(c)) {
+        i++;
+      } else {
+        break;
+      }
+    }
+    return i;
+  }
+
+  private static boolean isNameChar(char c) {
+    return c == '-' || c == '_' || Character.isLetterOrDigit(c) || c > 0x7f;
+  }
+
+  /** Resolves the escapes of an identifier or a string, {@code \:} or {@code \3A }. */
+  static String unescape(String value) {
+    if (value.indexOf('\\') == -1) {
+      return value;
+    }
+    StringBuilder out = new StringBuilder(value.length());
+    int i = 0;
+    while (i < value.length()) {
+      char c = value.charAt(i);
+      if (c != '\\' || i + 1 >= value.length()) {
+        out.append(c);
+        i++;
+        continue;
+      }
+      int end = i + 1;
+      while (end < value.length() && end < i + 7 && Character.digit(value.charAt(end), 16) != -1) {
+        end++;
+      }
+      if (end > i + 1) {
+        out.appendCodePoint(Integer.parseInt(value.substring(i + 1, end), 16));
+        if (end < value.length() && Character.isWhitespace(value.charAt(end))) {
+          end++;
+        }
+        i = end;
+      } else if (value.charAt(i + 1) == '\n') {
+        // a line continuation in a string
+        i += 2;
+      } else {
+        out.append(value.charAt(i + 1));
+        i += 2;
+      }
+    }
+    return out.toString();
+  }
+}
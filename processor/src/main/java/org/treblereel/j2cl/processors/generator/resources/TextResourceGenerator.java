@@ -16,62 +16,78 @@
 
 package org.treblereel.j2cl.processors.generator.resources;
 
-import freemarker.template.Template;
-import freemarker.template.TemplateException;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.HashMap;
 import java.util.Map;
+import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
-import javax.lang.model.element.TypeElement;
 import org.treblereel.j2cl.processors.common.resources.ResourcePrototype;
 import org.treblereel.j2cl.processors.common.resources.TextResource;
 import org.treblereel.j2cl.processors.context.AptContext;
-import org.treblereel.j2cl.processors.exception.GenerationException;
 
-class TextResourceGenerator extends AbstractResourceGenerator {
+class TextResourceGenerator extends EncodingResourceGenerator {
 
-  private Template template;
-
-  TextResourceGenerator(AptContext context) {
+  TextResourceGenerator(AptContext context, SharedValues sharedValues) {
     super(
         context,
         TextResource.class,
-        TextResource.class.getAnnotation(ResourcePrototype.DefaultExtensions.class));
+        TextResource.class.getAnnotation(ResourcePrototype.DefaultExtensions.class),
+        "textresource.ftlh",
+        null,
+        sharedValues);
   }
 
+  /**
+   * Scripts annotated with {@link TextResource.Minify} are minified before they are embedded, like
+   * any other value the result is kept in the cache.
+   */
   @Override
-  void initializer(Map<String, Object> root, TypeElement clientBundle, ExecutableElement method) {
-    String resource = lookupResource(method);
-    String encoded = write(resource, method, s -> "return " + s);
-    Map<String, Object> definition = new HashMap<>();
-    definition.put("name", method.getSimpleName().toString());
-    definition.put("impl", encoded);
-
-    StringOutputStream os = new StringOutputStream();
-    try (Writer out = new OutputStreamWriter(os, StandardCharsets.UTF_8)) {
-      if (template == null) {
-        template = cfg.getTemplate("textresource.ftlh");
-      }
-      template.process(definition, out);
-      root.put("initializer", os.toString());
-    } catch (TemplateException | IOException e) {
-      throw new GenerationException(e);
-    }
+  Initializer initializer(ExecutableElement method) {
+    String name = method.getSimpleName().toString();
+    Element bundle = method.getEnclosingElement();
+    TextResource.Minify minify = method.getAnnotation(TextResource.Minify.class);
+    TextResource.Minify.Level level = minify != null ? minify.value() : null;
+    return (content, external) -> {
+      Map<String, Object> definition = new HashMap<>();
+      definition.put("name", name);
+      String key = valueKey("text", level != null ? level.name() : null, content.getDigest());
+      Fragment value =
+          value(
+              bundle,
+              key,
+              content,
+              () -> {
+                if (level != null) {
+                  String script = minify(content, level);
+                  return out -> writeStringLiteral(out, new StringReader(script));
+                }
+                return out -> {
+                  try (Reader reader = content.openReader()) {
+                    writeStringLiteral(out, reader);
+                  }
+                };
+              });
+      definition.put("impl", statement("return ", value));
+      return render(definition);
+    };
   }
 
-  private String lookupResource(ExecutableElement method) {
-    URL resource = getResource(method, defaultExtensions.value());
-    if (resource == null) {
-      throw new GenerationException(
-          "Unable to find resource for: "
-              + method.getEnclosingElement()
-              + "."
-              + method.getSimpleName());
+  private String minify(ResourceContent content, TextResource.Minify.Level level)
+      throws IOException {
+    String script;
+    try (Reader reader = content.openReader()) {
+      StringWriter out = new StringWriter();
+      reader.transferTo(out);
+      script = out.toString();
     }
-    return readURLAsString(resource, method);
+    String path = content.getUrl().getPath();
+    String minified =
+        ScriptMinifier.minify(path.substring(path.lastIndexOf('/') + 1), script, level);
+    context.stats.increment("scripts.minified");
+    context.stats.count("scripts.charsSaved", script.length() - minified.length());
+    return minified;
   }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.resource;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * A content-addressed store for generated code fragments that survives between compilations. Keys
+ * are computed from everything that affects a fragment (the resource content, the options it was
+ * generated with and the template version), so an entry never has to be invalidated. Entries are
+ * kept as UTF-8 files, so they can be streamed into the generated sources.
+ */
+public interface ResourceCache {
+
+  /** Returns the entry stored under the key, or nothing if there is none or it's damaged. */
+  Optional<Entry> get(String key);
+
+  /**
+   * Stores what the entry writes under the key. The entry becomes visible only if it was written
+   * completely; the stored entry is returned, or nothing if the cache is disabled or failed to
+   * store it.
+   */
+  Optional<Entry> put(String key, Entry entry) throws IOException;
+
+  static String key(String... parts) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (String part : parts) {
+      hasher.putString(String.valueOf(part), StandardCharsets.UTF_8).putByte((byte) 0);
+    }
+    return hasher.hash().toString();
+  }
+
+  @FunctionalInterface
+  interface Entry {
+
+    void writeTo(Writer out) throws IOException;
+  }
+}
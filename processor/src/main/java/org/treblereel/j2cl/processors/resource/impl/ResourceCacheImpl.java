@@ -0,0 +1,251 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.resource.impl;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.CodeSource;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.StandardLocation;
+import org.treblereel.j2cl.processors.resource.ResourceCache;
+
+/**
+ * Keeps cached fragments as files under {@code gwt3-cache}, next to the class output folder (that
+ * is {@code target/gwt3-cache} for maven builds). The location can be set with the {@value
+ * #CACHE_DIR_OPTION} processor option, and the cache can be turned off with {@code
+ * -Agwt3.cache=false}.
+ *
+ * <p>Keys are combined with a digest of the processor itself, so entries written by another build
+ * of the processor are never read, even if a change to the generated code forgot to bump the cache
+ * version of the generators. Each file starts with the sha-256 of the fragment, which is checked
+ * before an entry is used: a damaged or truncated entry is deleted and generated again.
+ */
+public class ResourceCacheImpl implements ResourceCache {
+
+  public static final String CACHE_OPTION = "gwt3.cache";
+  public static final String CACHE_DIR_OPTION = "gwt3.cache.dir";
+
+  private static final String CACHE_DIR = "gwt3-cache";
+
+  /** The hex sha-256 of the fragment and a line break. */
+  private static final int HEADER_LENGTH = 65;
+
+  private final Path dir;
+
+  public ResourceCacheImpl(ProcessingEnvironment processingEnv) {
+    Path cacheDir = getCacheDir(processingEnv);
+    // without the version of the processor, entries of another build can't be told apart
+    this.dir = ProcessorDigest.VALUE != null ? cacheDir : null;
+  }
+
+  @Override
+  public Optional<Entry> get(String key) {
+    if (dir == null) {
+      return Optional.empty();
+    }
+    Path file = toPath(key);
+    if (!Files.isRegularFile(file)) {
+      return Optional.empty();
+    }
+    if (!isIntact(file)) {
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException e) {
+        // it's overwritten when the fragment is stored again
+      }
+      return Optional.empty();
+    }
+    return Optional.of(fromFile(file));
+  }
+
+  @Override
+  public Optional<Entry> put(String key, Entry entry) throws IOException {
+    if (dir == null) {
+      return Optional.empty();
+    }
+    Path file = toPath(key);
+    Path tmp;
+    try {
+      Files.createDirectories(file.getParent());
+      tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+    } catch (IOException e) {
+      // cache is best effort, the fragment will be regenerated next time
+      return Optional.empty();
+    }
+    try {
+      write(tmp, entry);
+      try {
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        try {
+          Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+          return Optional.empty();
+        }
+      }
+      return Optional.of(fromFile(file));
+    } finally {
+      Files.deleteIfExists(tmp);
+    }
+  }
+
+  /** Writes the fragment after a placeholder, which is replaced by its digest once it's known. */
+  private static void write(Path file, Entry entry) throws IOException {
+    HashingOutputStream hashing;
+    try (OutputStream out = Files.newOutputStream(file)) {
+      out.write(new byte[HEADER_LENGTH]);
+      hashing = new HashingOutputStream(Hashing.sha256(), out);
+      Writer writer = new OutputStreamWriter(hashing, StandardCharsets.UTF_8);
+      entry.writeTo(writer);
+      writer.flush();
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.write(
+          ByteBuffer.wrap((hashing.hash() + "\n").getBytes(StandardCharsets.US_ASCII)), 0);
+    }
+  }
+
+  private static boolean isIntact(Path file) {
+    try (InputStream in = Files.newInputStream(file)) {
+      byte[] header = in.readNBytes(HEADER_LENGTH);
+      if (header.length != HEADER_LENGTH) {
+        return false;
+      }
+      HashingInputStream hashing = new HashingInputStream(Hashing.sha256(), in);
+      hashing.transferTo(OutputStream.nullOutputStream());
+      return (hashing.hash() + "\n").equals(new String(header, StandardCharsets.US_ASCII));
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  private static Entry fromFile(Path file) {
+    return out -> {
+      try (InputStream in = Files.newInputStream(file)) {
+        ByteStreams.skipFully(in, HEADER_LENGTH);
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+          reader.transferTo(out);
+        }
+      }
+    };
+  }
+
+  private Path toPath(String key) {
+    String versioned = ResourceCache.key(ProcessorDigest.VALUE, key);
+    return dir.resolve(versioned.substring(0, 2)).resolve(versioned);
+  }
+
+  private static Path getCacheDir(ProcessingEnvironment processingEnv) {
+    if ("false".equalsIgnoreCase(processingEnv.getOptions().get(CACHE_OPTION))) {
+      return null;
+    }
+    String dir = processingEnv.getOptions().get(CACHE_DIR_OPTION);
+    if (dir != null) {
+      return Paths.get(dir);
+    }
+    try {
+      Path classOutput =
+          Paths.get(
+                  processingEnv
+                      .getFiler()
+                      .getResource(StandardLocation.CLASS_OUTPUT, "", CACHE_DIR)
+                      .toUri())
+              .getParent();
+      if (classOutput != null && classOutput.getParent() != null) {
+        return classOutput.getParent().resolve(CACHE_DIR);
+      }
+    } catch (IOException | IllegalArgumentException | FileSystemNotFoundException e) {
+      // no file based class output, nowhere to keep the cache
+    }
+    return null;
+  }
+
+  /**
+   * The digest of the processor: of the names and checksums of the entries of its jar, or of its
+   * class files if it runs from a folder. Null if it can't be located.
+   */
+  private static final class ProcessorDigest {
+
+    private static final String VALUE = compute();
+
+    private static String compute() {
+      try {
+        CodeSource source = ResourceCacheImpl.class.getProtectionDomain().getCodeSource();
+        if (source == null) {
+          return null;
+        }
+        Path location = Paths.get(source.getLocation().toURI());
+        Hasher hasher = Hashing.sha256().newHasher();
+        if (Files.isRegularFile(location)) {
+          try (ZipFile jar = new ZipFile(location.toFile())) {
+            jar.stream()
+                .forEach(
+                    entry ->
+                        hasher
+                            .putString(entry.getName(), StandardCharsets.UTF_8)
+                            .putByte((byte) 0)
+                            .putLong(entry.getCrc())
+                            .putLong(entry.getSize()));
+          }
+        } else if (Files.isDirectory(location)) {
+          List<Path> files;
+          try (Stream<Path> walk = Files.walk(location)) {
+            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+          }
+          for (Path file : files) {
+            hasher.putString(location.relativize(file).toString(), StandardCharsets.UTF_8);
+            hasher.putByte((byte) 0).putBytes(Files.readAllBytes(file));
+          }
+        } else {
+          return null;
+        }
+        return hasher.hash().toString();
+      } catch (IOException
+          | URISyntaxException
+          | IllegalArgumentException
+          | FileSystemNotFoundException
+          | SecurityException e) {
+        return null;
+      }
+    }
+  }
+}
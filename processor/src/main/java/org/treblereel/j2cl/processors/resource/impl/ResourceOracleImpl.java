@@ -14,14 +14,26 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
+
 package org.treblereel.j2cl.processors.resource.impl;
 
+import io.github.classgraph.ClassGraph;
+import io.github.classgraph.Resource;
+import io.github.classgraph.ScanResult;
 import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.processing.FilerException;
 import javax.tools.FileObject;
 import javax.tools.JavaFileManager.Location;
@@ -29,6 +41,19 @@ import javax.tools.StandardLocation;
 import org.treblereel.j2cl.processors.context.AptContext;
 import org.treblereel.j2cl.processors.resource.ResourceOracle;
 
+/**
+ * Looks resources up in the processor class loader first, then in the javac locations. The oracle
+ * lives as long as the compilation, so it indexes what doesn't change while javac runs:
+ *
+ * <ul>
+ *   <li>the class loader is scanned once, its directories and jar central directories, and lookups
+ *       are answered from the index
+ *   <li>lookups in input locations, that can't be listed through the Filer, are remembered, misses
+ *       included
+ *   <li>output locations are resolved against their folder on every lookup and misses are never
+ *       remembered, since generators keep adding files to them
+ * </ul>
+ */
 public class ResourceOracleImpl implements ResourceOracle {
   private final AptContext aptContext;
 
@@ -40,6 +65,12 @@ public class ResourceOracleImpl implements ResourceOracle {
           StandardLocation.CLASS_OUTPUT,
           StandardLocation.ANNOTATION_PROCESSOR_PATH);
 
+  private final Map<Location, Map<String, Optional<URL>>> inputs = new ConcurrentHashMap<>();
+
+  private final Map<Location, Optional<Path>> outputs = new ConcurrentHashMap<>();
+
+  private volatile Optional<Map<String, URL>> classLoaderIndex;
+
   public ResourceOracleImpl(AptContext context) {
     this.aptContext = context;
   }
@@ -64,9 +95,12 @@ public class ResourceOracleImpl implements ResourceOracle {
    * <p>Searches in the order of
    *
    * <ul>
+   *   <li>the class loader of the processor
    *   <li>{@link StandardLocation#SOURCE_PATH}
+   *   <li>{@link StandardLocation#SOURCE_OUTPUT}
    *   <li>{@link StandardLocation#CLASS_PATH}
    *   <li>{@link StandardLocation#CLASS_OUTPUT}
+   *   <li>{@link StandardLocation#ANNOTATION_PROCESSOR_PATH}
    * </ul>
    *
    * @return FileObject or null if file is not found.
@@ -97,7 +131,10 @@ public class ResourceOracleImpl implements ResourceOracle {
       if (pkg.length() > 0) {
         path = String.valueOf(pkg).replace('.', '/') + '/';
       }
-      URL candidate = findResource(location, path + relativeName);
+      URL candidate =
+          location.isOutputLocation()
+              ? findOutput(location, path + relativeName)
+              : findInput(location, path + relativeName);
       if (candidate != null) {
         return candidate;
       }
@@ -106,6 +143,40 @@ public class ResourceOracleImpl implements ResourceOracle {
     return null;
   }
 
+  private URL findInput(Location location, String relativeName) {
+    return inputs
+        .computeIfAbsent(location, k -> new ConcurrentHashMap<>())
+        .computeIfAbsent(relativeName, k -> Optional.ofNullable(findResource(location, k)))
+        .orElse(null);
+  }
+
+  private URL findOutput(Location location, String relativeName) {
+    Optional<Path> root = outputs.computeIfAbsent(location, this::getOutputRoot);
+    if (!root.isPresent()) {
+      return findResource(location, relativeName);
+    }
+    Path file = root.get().resolve(relativeName);
+    if (Files.isRegularFile(file)) {
+      try {
+        return file.toUri().toURL();
+      } catch (MalformedURLException e) {
+        // ignored
+      }
+    }
+    return null;
+  }
+
+  /** The folder of an output location, if it is a folder on the default file system. */
+  private Optional<Path> getOutputRoot(Location location) {
+    try {
+      FileObject probe =
+          aptContext.getProcessingEnv().getFiler().getResource(location, "", "probe");
+      return Optional.ofNullable(Paths.get(probe.toUri()).getParent());
+    } catch (IOException | IllegalArgumentException | FileSystemNotFoundException e) {
+      return Optional.empty();
+    }
+  }
+
   private URL findResource(Location location, String relativeName) {
     try {
       FileObject fileObject =
@@ -131,6 +202,10 @@ public class ResourceOracleImpl implements ResourceOracle {
   }
 
   private URL getUrlClassLoader(String path) {
+    Optional<Map<String, URL>> index = getClassLoaderIndex();
+    if (index.isPresent()) {
+      return index.get().get(path);
+    }
     ClassLoader classLoader = getClass().getClassLoader();
     URL resource = classLoader.getResource(path);
     if (resource != null) {
@@ -138,4 +213,35 @@ public class ResourceOracleImpl implements ResourceOracle {
     }
     return null;
   }
+
+  /**
+   * Lists every resource but classes the class loader can see, in the order the class loader would
+   * find them. It's empty if the class loader can't be scanned, lookups then go to the class loader
+   * itself.
+   */
+  private Optional<Map<String, URL>> getClassLoaderIndex() {
+    if (classLoaderIndex == null) {
+      synchronized (this) {
+        if (classLoaderIndex == null) {
+          classLoaderIndex = scanClassLoader();
+        }
+      }
+    }
+    return classLoaderIndex;
+  }
+
+  private Optional<Map<String, URL>> scanClassLoader() {
+    try (ScanResult scan =
+        new ClassGraph().overrideClassLoaders(getClass().getClassLoader()).scan()) {
+      Map<String, URL> index = new HashMap<>();
+      for (Resource resource : scan.getAllResources()) {
+        if (!resource.getPath().endsWith(".class")) {
+          index.putIfAbsent(resource.getPath(), resource.getURL());
+        }
+      }
+      return Optional.of(index);
+    } catch (RuntimeException e) {
+      return Optional.empty();
+    }
+  }
 }
@@ -0,0 +1,170 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.treblereel.j2cl.processors.annotations.GWT3Resource;
+import org.treblereel.j2cl.processors.common.resources.ClientBundle;
+import org.treblereel.j2cl.processors.common.resources.CssResource;
+
+public class CssResourceTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private static final CssResourceTest_CssResourcesImpl impl =
+      CssResourceTest_CssResourcesImpl.INSTANCE;
+
+  interface Style extends CssResource {
+
+    String button();
+
+    String panel();
+
+    @ClassName("md:flex")
+    String flex();
+  }
+
+  @GWT3Resource
+  interface CssResources extends ClientBundle {
+
+    @Source("style.css")
+    CssResource plain();
+
+    @Source("style.css")
+    Style style();
+
+    @Source("style.css")
+    @CssResource.CssOptions(obfuscate = true)
+    Style obfuscated();
+
+    @Source("style.css")
+    @CssResource.CssOptions(maxInlineSize = 0)
+    CssResource notInlined();
+  }
+
+  @Test
+  public void testMinified() {
+    String css = impl.plain().getText();
+    assertFalse(css.contains("Stylesheet of CssResourceTest"));
+    assertFalse(css.contains("\n"));
+    assertTrue(css.contains(".button:hover,.panel>.button{color:red}"));
+    // whitespace that matters is kept
+    assertTrue(css.contains(".panel .title::before{"));
+    assertTrue(css.contains("width:calc(100% - 2px)"));
+    assertTrue(css.contains("@media screen and (max-width:600px){.panel{width:1.5em}}"));
+    // strings are kept as they are
+    assertTrue(css.contains("content:\"/* not a comment */\""));
+  }
+
+  @Test
+  public void testUrlsInlined() {
+    String css = impl.plain().getText();
+    assertTrue(css.contains(".button{background:url(\"data:image/png;base64,"));
+    assertTrue(css.contains("background-image:url(\"data:image/gif;base64,R0lGODlh"));
+    // too big, remote or text
+    assertTrue(css.contains("url(\"linux.png\")"));
+    assertTrue(css.contains("url(https://example.com/remote.png)"));
+    assertTrue(css.contains("@import url(other.css);"));
+  }
+
+  @Test
+  public void testMaxInlineSize() {
+    String css = impl.notInlined().getText();
+    assertFalse(css.contains("data:"));
+    assertTrue(css.contains("url(16x16.png)"));
+  }
+
+  @Test
+  public void testAccessors() {
+    assertEquals("button", impl.style().button());
+    assertEquals("panel", impl.style().panel());
+    assertEquals("md:flex", impl.style().flex());
+    assertEquals(impl.plain().getText(), impl.style().getText());
+    assertEquals("style", impl.style().getName());
+  }
+
+  @Test
+  public void testObfuscated() {
+    Style style = impl.obfuscated();
+    String css = style.getText();
+    assertNotEquals("button", style.button());
+    assertNotEquals(style.button(), style.panel());
+    assertTrue(style.button().length() < "button".length() + 3);
+    assertTrue(
+        css.contains(
+            "."
+                + style.button()
+                + ":hover,."
+                + style.panel()
+                + ">."
+                + style.button()
+                + "{color:red}"));
+    assertTrue(css.contains("." + style.flex() + "{display:flex}"));
+    assertTrue(css.contains("{." + style.panel() + "{width:1.5em}}"));
+    // classes without an accessor and attribute values are kept
+    assertTrue(css.contains(" .title::before{"));
+    assertTrue(css.contains(".large{"));
+    assertTrue(css.contains("a[href$=\".button\"]"));
+    // obfuscated names start with a prefix derived from the bundle and the method
+    String prefix = prefix(CssResources.class.getCanonicalName(), "obfuscated");
+    assertTrue(style.button(), style.button().startsWith(prefix));
+    assertTrue(style.panel(), style.panel().startsWith(prefix));
+  }
+
+  @Test
+  public void testExternalizeRejected() throws IOException {
+    TestCompiler compiler =
+        new TestCompiler(folder.newFolder().toPath())
+            .resource("org/example/style.css", ".button{color:red}")
+            .bundle(
+                "org.example.Styles",
+                "@ClientBundle.Externalize @Source(\"style.css\") CssResource style();");
+
+    RuntimeException e = assertThrows(RuntimeException.class, compiler::compile);
+    assertTrue(e.getMessage(), e.getMessage().contains("@Externalize isn't supported"));
+  }
+
+  /** The sha-256 of the parts, as the processor keys them, in base 36 and padded to 5 digits. */
+  private static String prefix(String bundle, String method) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+    for (String part : new String[] {bundle, method}) {
+      digest.update(part.getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+    }
+    String hex = String.format("%064x", new BigInteger(1, digest.digest()));
+    String hash = Long.toString(Long.parseLong(hex.substring(0, 6), 16), 36);
+    return "G" + "0".repeat(5 - hash.length()) + hash;
+  }
+}
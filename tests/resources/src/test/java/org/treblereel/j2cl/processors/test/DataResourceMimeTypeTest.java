@@ -65,6 +65,26 @@ public class DataResourceMimeTypeTest {
 
     @Source("largeLossy.jpg")
     DataResource largeLossy();
+
+    @Source("pngWithoutExtension")
+    DataResource pngWithoutExtension();
+
+    @Source("/jarfixture/logo.gif")
+    DataResource fromJar();
+
+    @Source("small.txt")
+    DataResource text();
+
+    @Source("style.css")
+    DataResource stylesheet();
+
+    @MimeType("font/woff")
+    @MavenArtifactSource(
+        group = "org.webjars",
+        artifact = "bootstrap",
+        version = "3.4.1",
+        path = "META-INF/resources/webjars/bootstrap/3.4.1/fonts/glyphicons-halflings-regular.woff")
+    DataResource resourceMimeTypeAnnotationFromMavenArtifact();
   }
 
   @Test
@@ -90,4 +110,32 @@ public class DataResourceMimeTypeTest {
     String url = impl.resourceMimeTypeAnnotationWithQuotedCodecsList().asString();
     assertEquals("data:video/3gpp; codecs=\"s263, samr\";base64,AAAAAA==", url);
   }
+
+  @Test
+  public void testMimeTypeFromExtension() {
+    // neither has a magic number
+    assertEquals("data:text/css;base64,", impl.stylesheet().asString().substring(0, 21));
+    assertEquals("data:text/plain;base64,", impl.text().asString().substring(0, 23));
+  }
+
+  @Test
+  public void testMimeTypeFromContent() {
+    assertEquals("data:image/jpeg;base64,/9j/", impl.largeLossy().asString().substring(0, 27));
+    assertEquals(
+        "data:image/png;base64,iVBORw0KGgo",
+        impl.pngWithoutExtension().asString().substring(0, 33));
+  }
+
+  @Test
+  public void testMimeTypeOfJarResource() {
+    assertEquals("data:image/gif;base64,R0lGOD", impl.fromJar().asString().substring(0, 28));
+  }
+
+  @Test
+  public void testMimeTypeAnnotationFromMavenArtifact() {
+    String url = impl.resourceMimeTypeAnnotationFromMavenArtifact().asString();
+    // 23424 bytes of woff, which starts with "wOFF"
+    assertEquals("data:font/woff;base64,d09GRg", url.substring(0, 28));
+    assertEquals("data:font/woff;base64,".length() + 23424 / 3 * 4, url.length());
+  }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.imageio.ImageIO;
+import org.junit.Test;
+import org.treblereel.j2cl.processors.annotations.GWT3Resource;
+import org.treblereel.j2cl.processors.common.resources.ClientBundle;
+import org.treblereel.j2cl.processors.common.resources.DataResource;
+import org.treblereel.j2cl.processors.common.resources.ExternalDataResource;
+import org.treblereel.j2cl.processors.common.resources.ExternalTextResource;
+import org.treblereel.j2cl.processors.common.resources.ImageResource;
+
+/** Tests for resources written to the class output by {@link ClientBundle.Externalize}. */
+public class ExternalResourceTest {
+
+  private static final String PATH = "org/treblereel/j2cl/processors/test/[0-9a-f]{32}\\.cache\\.";
+
+  private static final ExternalResourceTest_ExternalResourcesImpl impl =
+      ExternalResourceTest_ExternalResourcesImpl.INSTANCE;
+
+  @GWT3Resource
+  interface ExternalResources extends ClientBundle {
+
+    @Externalize
+    @Source("largeLossy.jpg")
+    DataResource largeLossy();
+
+    @Externalize
+    @Source("largeLossy.jpg")
+    DataResource largeLossyDup();
+
+    @Externalize
+    @Source("fourZeros.dat")
+    DataResource fourZeros();
+
+    @Externalize
+    @Source("largeLossless.png")
+    ImageResource largeLossless();
+
+    @Source("bigtextresource.txt")
+    ExternalTextResource bigText();
+
+    @Source("fourZeros.dat")
+    ExternalDataResource fourZerosData();
+
+    @Externalize
+    @Source("64x64.png")
+    @ImageResource.ImageOptions(width = 32)
+    ImageResource scaledDown();
+  }
+
+  @GWT3Resource
+  @ClientBundle.Sprite
+  interface ExternalSpriteResources extends ClientBundle {
+
+    @Source("16x16.png")
+    ImageResource i16x16();
+
+    @Externalize
+    @Source("32x32.png")
+    ImageResource i32x32();
+  }
+
+  @Test
+  public void testDataResource() throws IOException {
+    String url = impl.largeLossy().asString();
+    assertTrue(url, url.matches(PATH + "jpg"));
+    assertArrayEquals(read("largeLossy.jpg"), read("/" + url));
+  }
+
+  @Test
+  public void testSameContentSharesFile() {
+    assertEquals(impl.largeLossy().asString(), impl.largeLossyDup().asString());
+  }
+
+  @Test
+  public void testUnknownMimeType() throws IOException {
+    String url = impl.fourZeros().asString();
+    assertTrue(url, url.matches(PATH + "dat"));
+    assertArrayEquals(new byte[4], read("/" + url));
+  }
+
+  @Test
+  public void testExternalTextResource() throws IOException {
+    String url = impl.bigText().getUrl();
+    assertTrue(url, url.matches(PATH + "txt"));
+    assertArrayEquals(read("bigtextresource.txt"), read("/" + url));
+    assertEquals("bigText", impl.bigText().getName());
+  }
+
+  @Test
+  public void testExternalDataResource() {
+    // the same file as the externalized DataResource
+    assertEquals(impl.fourZeros().asString(), impl.fourZerosData().getUrl());
+    assertEquals("fourZerosData", impl.fourZerosData().getName());
+  }
+
+  @Test
+  public void testImageResource() throws IOException {
+    String url = impl.largeLossless().getSrc();
+    assertTrue(url, url.matches(PATH + "png"));
+    BufferedImage image = ImageIO.read(ExternalResourceTest.class.getResource("/" + url));
+    assertEquals(impl.largeLossless().getWidth(), image.getWidth());
+    assertEquals(impl.largeLossless().getHeight(), image.getHeight());
+  }
+
+  @Test
+  public void testScaledImageResource() throws IOException {
+    String url = impl.scaledDown().getSrc();
+    // optimized, so it may have become a GIF
+    assertTrue(url, url.matches(PATH + "(png|gif)"));
+    BufferedImage image = ImageIO.read(ExternalResourceTest.class.getResource("/" + url));
+    assertEquals(32, image.getWidth());
+    assertEquals(32, image.getHeight());
+  }
+
+  @Test
+  public void testExternalizedImageIsNotPacked() {
+    ExternalResourceTest_ExternalSpriteResourcesImpl sprite =
+        ExternalResourceTest_ExternalSpriteResourcesImpl.INSTANCE;
+    assertTrue(sprite.i16x16().getSrc().startsWith("data:image/"));
+    assertTrue(sprite.i32x32().getSrc().matches(PATH + "(png|gif)"));
+    assertEquals(0, sprite.i32x32().getLeft());
+    assertEquals(0, sprite.i32x32().getTop());
+  }
+
+  private static byte[] read(String name) throws IOException {
+    try (InputStream input = ExternalResourceTest.class.getResourceAsStream(name)) {
+      assertNotNull(name, input);
+      return input.readAllBytes();
+    }
+  }
+}
@@ -15,8 +15,20 @@
  */
 package org.treblereel.j2cl.processors.test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.treblereel.j2cl.processors.common.resources.ImageResource.*;
 
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Base64;
+import javax.imageio.ImageIO;
 import org.junit.Test;
 import org.treblereel.j2cl.processors.annotations.GWT3Resource;
 import org.treblereel.j2cl.processors.common.resources.ClientBundle;
@@ -64,10 +76,79 @@ public class ImageResourceTest {
     @ImageOptions(width = 128)
     ImageResource scaledUp();
 
+    @Source("64x64.png")
+    @ImageOptions(width = 32, height = 128)
+    ImageResource scaledMixed();
+
     @Source("logo.png")
     ImageResource linuxLogo();
+
+    @Source("/jarfixture/logo.gif")
+    ImageResource fromJar();
+
+    @Source("linux.png")
+    @ImageOptions(width = 32)
+    ImageResource linuxIcon();
+
+    @Source("largeLossy.jpg")
+    @ImageOptions(height = 150)
+    ImageResource scaledLossy();
+
+    @Source("largeLossy.jpg")
+    @ImageOptions(jpegQuality = 50)
+    ImageResource lossyQuality50();
+
+    @Source("edit_16x16.gif")
+    ImageResource edit();
+
+    @Source("gray.png")
+    ImageResource gray();
   }
 
+  @GWT3Resource
+  @ClientBundle.Sprite
+  interface SpriteResources extends ClientBundle {
+
+    @Source("16x16.png")
+    ImageResource i16x16();
+
+    @Source("32x32.png")
+    ImageResource i32x32();
+
+    @Source("64x64.png")
+    ImageResource i64x64();
+
+    @Source("edit_16x16.gif")
+    ImageResource edit();
+
+    @Source("linux.png")
+    @ImageOptions(width = 32)
+    ImageResource linuxIcon();
+
+    @Source("64x64.png")
+    @ImageOptions(width = 128)
+    ImageResource scaledUp();
+
+    @Source("64x64.png")
+    @ImageOptions(width = 32, height = 128)
+    ImageResource scaledMixed();
+
+    @Source("animated.gif")
+    ImageResource animated();
+
+    @Source("complexLossy.jpg")
+    ImageResource complexLossy();
+
+    @Source("gray.png")
+    ImageResource gray();
+  }
+
+  private static final ImageResourceTest_ImageResourcesImpl impl =
+      ImageResourceTest_ImageResourcesImpl.INSTANCE;
+
+  private static final ImageResourceTest_SpriteResourcesImpl sprite =
+      ImageResourceTest_SpriteResourcesImpl.INSTANCE;
+
   @Test
   public void testAnimated() {}
 
@@ -79,20 +160,20 @@ public class ImageResourceTest {
 
   @Test
   public void testI16x16() {
-    // Test the i16x16() method
-    // Assert expected behavior
+    assertEquals(16, impl.i16x16().getWidth());
+    assertEquals(16, impl.i16x16().getHeight());
   }
 
   @Test
   public void testI32x32() {
-    // Test the i32x32() method
-    // Assert expected behavior
+    assertEquals(32, impl.i32x32().getWidth());
+    assertEquals(32, impl.i32x32().getHeight());
   }
 
   @Test
   public void testI64x64() {
-    // Test the i64x64() method
-    // Assert expected behavior
+    assertEquals(64, impl.i64x64().getWidth());
+    assertEquals(64, impl.i64x64().getHeight());
   }
 
   @Test
@@ -121,19 +202,208 @@ public class ImageResourceTest {
 
   @Test
   public void testScaledDown() {
-    // Test the scaledDown() method
-    // Assert expected behavior
+    assertEquals(32, impl.scaledDown().getWidth());
+    assertEquals(32, impl.scaledDown().getHeight());
+    BufferedImage image = decode(impl.scaledDown().getSrc());
+    assertEquals(32, image.getWidth());
+    assertEquals(32, image.getHeight());
   }
 
   @Test
   public void testScaledUp() {
-    // Test the scaledUp() method
-    // Assert expected behavior
+    assertEquals(128, impl.scaledUp().getWidth());
+    assertEquals(128, impl.scaledUp().getHeight());
+    // never scaled up, the browser does it
+    assertEquals(impl.i64x64().getSrc(), impl.scaledUp().getSrc());
   }
 
   @Test
-  public void testLinuxLogo() {
-    // Test the linuxLogo() method
-    // Assert expected behavior
+  public void testScaledMixed() {
+    // displayed at the requested size, only the width is scaled down
+    assertEquals(32, impl.scaledMixed().getWidth());
+    assertEquals(128, impl.scaledMixed().getHeight());
+    BufferedImage image = decode(impl.scaledMixed().getSrc());
+    assertEquals(32, image.getWidth());
+    assertEquals(64, image.getHeight());
+  }
+
+  @Test
+  public void testLinuxIcon() {
+    assertEquals(32, impl.linuxIcon().getWidth());
+    assertEquals(32, impl.linuxIcon().getHeight());
+    BufferedImage image = decode(impl.linuxIcon().getSrc());
+    assertEquals(32, image.getWidth());
+    assertTrue(impl.linuxIcon().getSrc().length() < impl.linuxLogo().getSrc().length());
+  }
+
+  @Test
+  public void testScaledLossy() {
+    assertEquals(267, impl.scaledLossy().getWidth());
+    assertEquals(150, impl.scaledLossy().getHeight());
+    assertTrue(impl.scaledLossy().getSrc().startsWith("data:image/jpeg;base64,"));
+    BufferedImage image = decode(impl.scaledLossy().getSrc());
+    assertEquals(267, image.getWidth());
+    assertEquals(150, image.getHeight());
+  }
+
+  private static BufferedImage decode(String src) {
+    assertTrue(src.startsWith("data:image/"));
+    try {
+      return ImageIO.read(
+          new ByteArrayInputStream(
+              Base64.getDecoder().decode(src.substring(src.indexOf(',') + 1))));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Test
+  public void testLinuxLogo() throws IOException {
+    // already well compressed, the original is kept although -Agwt3.image.optimize is set
+    assertEquals(size("logo.png"), length(impl.linuxLogo().getSrc()));
+  }
+
+  @Test
+  public void testOptimized() throws IOException {
+    // recompressed by -Agwt3.image.optimize, set in the pom
+    assertSamePixels("16x16.png", decode(impl.i16x16().getSrc()));
+    assertTrue(length(impl.i16x16().getSrc()) < size("16x16.png"));
+  }
+
+  @Test
+  public void testPaletted() throws IOException {
+    // 36 colors, kept as GIF or converted to an indexed PNG, whichever is smaller
+    assertSamePixels("edit_16x16.gif", decode(impl.edit().getSrc()));
+    assertTrue(length(impl.edit().getSrc()) <= size("edit_16x16.gif"));
+  }
+
+  @Test
+  public void testSprite() throws IOException {
+    ImageResource[] packed = {
+      sprite.i16x16(),
+      sprite.i32x32(),
+      sprite.i64x64(),
+      sprite.edit(),
+      sprite.linuxIcon(),
+      sprite.scaledUp()
+    };
+    BufferedImage sheet = decode(packed[0].getSrc());
+    for (int i = 0; i < packed.length; i++) {
+      assertSame(packed[0].getSrc(), packed[i].getSrc());
+      assertTrue(packed[i].getLeft() + packed[i].getWidth() <= sheet.getWidth());
+      assertTrue(packed[i].getTop() + packed[i].getHeight() <= sheet.getHeight());
+      for (int j = 0; j < i; j++) {
+        assertTrue(
+            packed[i].getLeft() >= packed[j].getLeft() + packed[j].getWidth()
+                || packed[j].getLeft() >= packed[i].getLeft() + packed[i].getWidth()
+                || packed[i].getTop() >= packed[j].getTop() + packed[j].getHeight()
+                || packed[j].getTop() >= packed[i].getTop() + packed[i].getHeight());
+      }
+    }
+    assertSamePixels("16x16.png", region(sheet, sprite.i16x16()));
+    assertSamePixels("edit_16x16.gif", region(sheet, sprite.edit()));
+    assertEquals(32, sprite.linuxIcon().getWidth());
+    assertEquals(32, sprite.linuxIcon().getHeight());
+  }
+
+  @Test
+  public void testSpriteNeverScalesUp() throws IOException {
+    BufferedImage sheet = decode(sprite.scaledUp().getSrc());
+    assertEquals(64, sprite.scaledUp().getWidth());
+    assertEquals(64, sprite.scaledUp().getHeight());
+    assertSamePixels("64x64.png", region(sheet, sprite.scaledUp()));
+  }
+
+  @Test
+  public void testSpriteScalesMixedDown() {
+    BufferedImage sheet = decode(sprite.scaledMixed().getSrc());
+    assertEquals(32, sprite.scaledMixed().getWidth());
+    assertEquals(64, sprite.scaledMixed().getHeight());
+    assertTrue(sprite.scaledMixed().getLeft() + 32 <= sheet.getWidth());
+    assertTrue(sprite.scaledMixed().getTop() + 64 <= sheet.getHeight());
+  }
+
+  @Test
+  public void testSpriteSkipsJpegsAndAnimations() {
+    assertEquals(impl.animated().getSrc(), sprite.animated().getSrc());
+    assertEquals(0, sprite.animated().getLeft());
+    assertEquals(impl.complexLossy().getSrc(), sprite.complexLossy().getSrc());
+    assertEquals(0, sprite.complexLossy().getTop());
+  }
+
+  @Test
+  public void testGrayscale() {
+    // gray samples are shown as they are, converted to sRGB colors they would be brighter
+    assertGrayLevels(decode(impl.gray().getSrc()));
+  }
+
+  @Test
+  public void testSpriteSkipsGrayscale() {
+    assertNotEquals(sprite.i16x16().getSrc(), sprite.gray().getSrc());
+    assertEquals(0, sprite.gray().getLeft());
+    assertGrayLevels(decode(sprite.gray().getSrc()));
+  }
+
+  /** gray.png has four 8x8 squares of gray levels 0, 64, 128 and 255. */
+  private static void assertGrayLevels(BufferedImage image) {
+    BufferedImage rendered =
+        new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+    Graphics2D graphics = rendered.createGraphics();
+    graphics.drawImage(image, 0, 0, null);
+    graphics.dispose();
+    assertEquals(0xff000000, rendered.getRGB(0, 0));
+    assertEquals(0xff404040, rendered.getRGB(8, 0));
+    assertEquals(0xff808080, rendered.getRGB(0, 8));
+    assertEquals(0xffffffff, rendered.getRGB(8, 8));
+  }
+
+  private static BufferedImage region(BufferedImage sheet, ImageResource image) {
+    return sheet.getSubimage(image.getLeft(), image.getTop(), image.getWidth(), image.getHeight());
+  }
+
+  private static int visible(int argb) {
+    return argb >>> 24 == 0 ? 0 : argb;
+  }
+
+  private static void assertSamePixels(String name, BufferedImage actual) throws IOException {
+    BufferedImage expected;
+    try (InputStream input = ImageResourceTest.class.getResourceAsStream(name)) {
+      expected = ImageIO.read(input);
+    }
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    for (int y = 0; y < expected.getHeight(); y++) {
+      for (int x = 0; x < expected.getWidth(); x++) {
+        // the color of transparent pixels is never visible
+        assertEquals(visible(expected.getRGB(x, y)), visible(actual.getRGB(x, y)));
+      }
+    }
+  }
+
+  @Test
+  public void testJpegQuality() throws IOException {
+    assertEquals(533, impl.lossyQuality50().getWidth());
+    assertEquals(300, impl.lossyQuality50().getHeight());
+    assertTrue(impl.lossyQuality50().getSrc().startsWith("data:image/jpeg;base64,"));
+    assertTrue(length(impl.lossyQuality50().getSrc()) < size("largeLossy.jpg"));
+    // not re-encoded without a quality
+    assertEquals(size("largeLossy.jpg"), length(impl.largeLossy().getSrc()));
+  }
+
+  private static int length(String src) {
+    return Base64.getDecoder().decode(src.substring(src.indexOf(',') + 1)).length;
+  }
+
+  private static int size(String name) throws IOException {
+    try (InputStream input = ImageResourceTest.class.getResourceAsStream(name)) {
+      return input.readAllBytes().length;
+    }
+  }
+
+  @Test
+  public void testFromJar() {
+    assertEquals(22, impl.fromJar().getWidth());
+    assertEquals(17, impl.fromJar().getHeight());
+    assertTrue(impl.fromJar().getSrc().startsWith("data:image/gif;base64,R0lGODlh"));
   }
 }
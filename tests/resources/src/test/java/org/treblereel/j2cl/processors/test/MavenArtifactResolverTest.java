@@ -0,0 +1,155 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import javax.tools.Diagnostic;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@code @MavenArtifactSource} resolution against a {@code file://} repository that
+ * stands in for a remote one, in offline mode.
+ */
+public class MavenArtifactResolverTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path localRepository;
+
+  private TestCompiler compiler;
+
+  @Before
+  public void setUp() throws IOException {
+    localRepository = folder.newFolder("repository").toPath();
+    compiler =
+        new TestCompiler(folder.newFolder().toPath())
+            .option("-Agwt3.maven.repository=" + localRepository)
+            .option("-Agwt3.maven.offline=true");
+  }
+
+  @Test
+  public void testResolveFromFileRepository() throws IOException, URISyntaxException {
+    TestCompiler.Result result = hello("1.0").compile();
+
+    assertTrue(result.toString(), result.isSuccess());
+    assertTrue(
+        Files.isRegularFile(
+            localRepository.resolve("org/treblereel/test/fixture/1.0/fixture-1.0.jar")));
+    String impl = Files.readString(compiler.getOutput().resolve("org/example/HelloImpl.java"));
+    assertTrue(impl, impl.contains("Hello from a maven artifact"));
+  }
+
+  @Test
+  public void testEntryWithUnusualName() throws IOException, URISyntaxException {
+    // the local repository, and so the artifact, are in a folder with a '#' and a space
+    compiler =
+        new TestCompiler(folder.newFolder().toPath())
+            .option("-Agwt3.maven.repository=" + folder.newFolder("local #repository"))
+            .option("-Agwt3.maven.offline=true");
+    TestCompiler.Result result =
+        compiler.bundle("org.example.Hello", source("1.0", "fixture/hello #1 é.txt")).compile();
+
+    assertTrue(result.toString(), result.isSuccess());
+    assertTrue(
+        compiler
+            .read("org/example/HelloImpl.java")
+            .contains("Hello from an entry with an unusual name"));
+  }
+
+  @Test
+  public void testDownloadIsReported() throws IOException, URISyntaxException {
+    TestCompiler.Result result = hello("1.0").compile();
+
+    List<String> notes = result.getMessages(Diagnostic.Kind.NOTE);
+    assertEquals(notes.toString(), 1, notes.size());
+    assertTrue(
+        notes.get(0),
+        notes.get(0).matches("Downloaded org\\.treblereel\\.test:fixture:1\\.0 in \\d+ ms"));
+  }
+
+  @Test
+  public void testResolvedArtifactIsReportedWithStats() throws IOException, URISyntaxException {
+    hello("1.0").compile();
+    TestCompiler.Result quiet = compiler.compile();
+    TestCompiler.Result result = compiler.option("-Agwt3.stats=true").compile();
+
+    assertEquals(List.of(), quiet.getMessages(Diagnostic.Kind.NOTE));
+    assertTrue(
+        result.toString(),
+        result.getMessages(Diagnostic.Kind.NOTE).stream()
+            .anyMatch(
+                note -> note.matches("Resolved org\\.treblereel\\.test:fixture:1\\.0 in \\d+ ms")));
+    assertEquals(0, result.getCounter("maven.downloads"));
+  }
+
+  @Test
+  public void testMissingArtifactOffline() throws IOException, URISyntaxException {
+    hello("2.0");
+
+    RuntimeException e = assertThrows(RuntimeException.class, compiler::compile);
+    assertTrue(e.getMessage(), e.getMessage().contains("in offline mode"));
+  }
+
+  @Test
+  public void testNoArtifacts() throws IOException {
+    TestCompiler.Result result =
+        compiler
+            .bundle(
+                "org.example.Empty",
+                Collections.singletonList("@ClientBundle.MavenArtifactSources({})"))
+            .compile();
+
+    assertTrue(result.toString(), result.isSuccess());
+    assertEquals(0, Files.list(localRepository).count());
+  }
+
+  private static String remoteRepository() throws URISyntaxException {
+    return Paths.get(MavenArtifactResolverTest.class.getResource("/maven-repository").toURI())
+        .toUri()
+        .toString();
+  }
+
+  private TestCompiler hello(String version) throws IOException, URISyntaxException {
+    return compiler.bundle("org.example.Hello", source(version, "fixture/hello.txt"));
+  }
+
+  private static String[] source(String version, String path) throws URISyntaxException {
+    return new String[] {
+      "@MavenArtifactSource(",
+      "    group = \"org.treblereel.test\",",
+      "    artifact = \"fixture\",",
+      "    version = \"" + version + "\",",
+      "    path = \"" + path + "\",",
+      "    repositoryId = \"fixture\",",
+      "    repositoryUrl = \"" + remoteRepository() + "\")",
+      "TextResource hello();"
+    };
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests that every file the processor generates is created with its originating elements. */
+public class OriginatingElementsTest {
+
+  private static final String TEXT = "@Source(\"hello.txt\") TextResource text();";
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testBundle() throws IOException {
+    TestCompiler.Result result =
+        new TestCompiler(folder.newFolder().toPath())
+            .resource("org/example/hello.txt", "Hello")
+            .bundle("org.example.Hello", TEXT)
+            .compile();
+
+    assertTrue(result.toString(), result.isSuccess());
+    assertEquals(
+        Collections.singletonList("org.example.Hello"), result.getOrigins("org.example.HelloImpl"));
+  }
+
+  @Test
+  public void testSharedValue() throws IOException {
+    // big enough to be shared
+    TestCompiler.Result result =
+        new TestCompiler(folder.newFolder().toPath())
+            .resource("org/example/hello.txt", "Hello".repeat(1024))
+            .bundle("org.example.Second", TEXT)
+            .bundle("org.example.First", TEXT)
+            .compile();
+
+    assertTrue(result.toString(), result.isSuccess());
+    List<String> both = Arrays.asList("org.example.First", "org.example.Second");
+    String holder =
+        result.getCreated().keySet().stream()
+            .filter(name -> name.startsWith("org.example.First_SharedResource_"))
+            .findFirst()
+            .orElseThrow(AssertionError::new);
+    assertEquals(both, result.getOrigins(holder));
+    for (Map.Entry<String, List<String>> created : result.getCreated().entrySet()) {
+      assertFalse(created.getKey(), created.getValue().isEmpty());
+    }
+  }
+}
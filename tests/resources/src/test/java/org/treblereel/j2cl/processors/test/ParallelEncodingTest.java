@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests for the resources of a round, which are encoded in parallel. */
+public class ParallelEncodingTest {
+
+  private static final String IMPL = "org/example/HelloImpl.java";
+
+  private static final int RESOURCES = 16;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private TestCompiler compiler;
+
+  @Before
+  public void setUp() throws IOException {
+    compiler = new TestCompiler(folder.newFolder().toPath()).option("-Agwt3.cache=false");
+  }
+
+  @Test
+  public void testOutputOrderIsDeterministic() throws IOException {
+    List<String> members = new ArrayList<>();
+    for (int i = 0; i < RESOURCES; i++) {
+      // the first resources are the biggest, so their tasks finish last
+      compiler.resource(
+          "org/example/r" + i + ".txt", ("value " + i + ";").repeat((RESOURCES - i) * 4096));
+      members.add("@Source(\"r" + i + ".txt\") TextResource r" + i + "();");
+    }
+    compiler.bundle("org.example.Hello", members.toArray(new String[0]));
+
+    assertTrue(compiler.compile().isSuccess());
+    String impl = compiler.read(IMPL);
+    for (int i = 1; i < RESOURCES; i++) {
+      assertTrue(
+          "r" + i + " after r" + (i - 1),
+          impl.indexOf("\"value " + i + ";") > impl.indexOf("\"value " + (i - 1) + ";"));
+    }
+    for (int i = 0; i < 3; i++) {
+      assertTrue(compiler.compile().isSuccess());
+      assertEquals(impl, compiler.read(IMPL));
+    }
+  }
+
+  @Test
+  public void testFailingTaskFailsTheRound() throws IOException {
+    compiler
+        .resource("org/example/hello.txt", "Hello")
+        .resource("org/example/broken.png", new byte[] {(byte) 0x89, 'P', 'N', 'G', 0, 0, 0, 0})
+        .bundle(
+            "org.example.Hello",
+            "@Source(\"hello.txt\") TextResource text();",
+            "@Source(\"broken.png\") ImageResource broken();");
+
+    RuntimeException e = assertThrows(RuntimeException.class, compiler::compile);
+    assertTrue(e.getMessage(), e.getMessage().contains("org.example.Hello.broken()"));
+    assertTrue(e.getMessage(), e.getMessage().contains("broken.png"));
+    assertFalse(Files.exists(compiler.getOutput().resolve(IMPL)));
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import javax.tools.Diagnostic;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Tests for the build metrics, written with {@code -Agwt3.stats=true}. */
+public class ProcessorStatsTest {
+
+  private static final String STATS_FILE = "META-INF/gwt3-processors/stats.json";
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private TestCompiler compiler;
+
+  @Before
+  public void setUp() throws IOException {
+    compiler =
+        new TestCompiler(folder.newFolder().toPath())
+            .option("-Agwt3.cache=false")
+            .resource("org/example/hello.txt", "Hello")
+            .resource("org/example/world.txt", "World!")
+            .bundle(
+                "org.example.Hello",
+                "@Source(\"hello.txt\") TextResource hello();",
+                "@Source(\"world.txt\") TextResource world();");
+  }
+
+  @Test
+  public void testStatsAreWritten() throws IOException {
+    TestCompiler.Result result = compiler.option("-Agwt3.stats=true").compile();
+
+    assertTrue(result.toString(), result.isSuccess());
+    String stats = result.getStats();
+    assertTrue(stats, stats.matches("(?s)\\{\n  \"rounds\": \\[\\d+],\n.*"));
+    assertTrue(
+        stats, stats.contains("\n  \"timesMillis\": {\"generator.GWT3ResourceGenerator\": "));
+    assertEquals(1, result.getCounter("generator.GWT3ResourceGenerator.elements"));
+    assertEquals(2, result.getCounter("resources.read"));
+    assertEquals(11, result.getCounter("resources.bytesRead"));
+    assertEquals(11, result.getCounter("encoding.textChars"));
+    assertEquals(0, result.getCounter("resources.cacheHits"));
+
+    List<String> notes = result.getMessages(Diagnostic.Kind.NOTE);
+    assertEquals(notes.toString(), 1, notes.size());
+    assertTrue(notes.get(0), notes.get(0).startsWith("gwt3-processors stats: 1 rounds in "));
+    assertTrue(notes.get(0), notes.get(0).contains(", resources.read=2"));
+  }
+
+  @Test
+  public void testNothingWithoutOption() throws IOException {
+    TestCompiler.Result result = compiler.compile();
+
+    assertTrue(result.toString(), result.isSuccess());
+    assertNull(result.getStats());
+    assertFalse(Files.exists(compiler.getOutput().resolve(STATS_FILE)));
+    assertEquals(List.of(), result.getMessages(Diagnostic.Kind.NOTE));
+  }
+}
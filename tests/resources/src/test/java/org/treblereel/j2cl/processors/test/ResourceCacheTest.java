@@ -0,0 +1,185 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.treblereel.j2cl.processors.GWT3Processor;
+
+/** Tests for the resource cache, which is on by default and kept next to the class output. */
+public class ResourceCacheTest {
+
+  private static final String TEXT = "@Source(\"hello.txt\") TextResource text();";
+
+  private static final String IMPL = "org/example/HelloImpl.java";
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private TestCompiler compiler;
+
+  @Before
+  public void setUp() throws IOException {
+    compiler =
+        new TestCompiler(folder.newFolder().toPath())
+            .option("-Agwt3.stats=true")
+            .resource("org/example/hello.txt", "Hello");
+  }
+
+  @Test
+  public void testHitOnUnchangedResource() throws IOException {
+    compiler.bundle("org.example.Hello", TEXT);
+    TestCompiler.Result first = compiler.compile();
+    String impl = compiler.read(IMPL);
+    TestCompiler.Result second = compiler.compile();
+
+    assertTrue(second.toString(), second.isSuccess());
+    assertEquals(0, first.getCounter("resources.cacheHits"));
+    assertEquals(1, second.getCounter("resources.cacheHits"));
+    assertEquals(impl, compiler.read(IMPL));
+  }
+
+  @Test
+  public void testMissAfterContentChange() throws IOException {
+    compiler.bundle("org.example.Hello", TEXT).compile();
+    TestCompiler.Result result = compiler.resource("org/example/hello.txt", "Changed").compile();
+
+    assertEquals(0, result.getCounter("resources.cacheHits"));
+    assertTrue(compiler.read(IMPL).contains("\"Changed\""));
+  }
+
+  @Test
+  public void testMissAfterMimeTypeChange() throws IOException {
+    compiler
+        .bundle(
+            "org.example.Hello",
+            "@DataResource.MimeType(\"text/plain\")",
+            "@Source(\"hello.txt\") DataResource data();")
+        .compile();
+    TestCompiler.Result result =
+        compiler
+            .bundle(
+                "org.example.Hello",
+                "@DataResource.MimeType(\"text/html\")",
+                "@Source(\"hello.txt\") DataResource data();")
+            .compile();
+
+    assertEquals(0, result.getCounter("resources.cacheHits"));
+    assertTrue(compiler.read(IMPL).contains("data:text/html;base64,"));
+  }
+
+  @Test
+  public void testMissAfterImageOptionsChange() throws IOException, URISyntaxException {
+    compiler.resource("org/example/64x64.png", fixture("64x64.png"));
+    String image = "@Source(\"64x64.png\") ImageResource image();";
+    compiler
+        .bundle("org.example.Hello", "@ImageResource.ImageOptions(width = 32)", image)
+        .compile();
+    String scaled = compiler.read(IMPL);
+    TestCompiler.Result result =
+        compiler
+            .bundle("org.example.Hello", "@ImageResource.ImageOptions(width = 16)", image)
+            .compile();
+
+    assertEquals(0, result.getCounter("resources.cacheHits"));
+    assertNotEquals(scaled, compiler.read(IMPL));
+    assertTrue(compiler.read(IMPL).contains("16, 16"));
+  }
+
+  @Test
+  public void testMissAfterTemplateChange() throws IOException {
+    compiler
+        .resource("org/example/style.css", ".button{color:red}")
+        .bundle("org.example.Hello", "@Source(\"style.css\") CssResource style();")
+        .compile();
+    String template;
+    try (InputStream in =
+        GWT3Processor.class.getResourceAsStream("/templates/resources/cssresource.ftlh")) {
+      template = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+    TestCompiler.Result result =
+        compiler.template("cssresource.ftlh", template + "/* changed */").compile();
+
+    assertTrue(result.toString(), result.isSuccess());
+    assertEquals(0, result.getCounter("resources.cacheHits"));
+    assertTrue(compiler.read(IMPL).contains("/* changed */"));
+  }
+
+  @Test
+  public void testCacheDisabled() throws IOException {
+    compiler.option("-Agwt3.cache=false").bundle("org.example.Hello", TEXT).compile();
+    TestCompiler.Result result = compiler.compile();
+
+    assertTrue(result.toString(), result.isSuccess());
+    assertEquals(0, result.getCounter("resources.cacheHits"));
+    assertFalse(Files.exists(compiler.getCache()));
+  }
+
+  @Test
+  public void testDamagedEntriesAreGeneratedAgain() throws IOException {
+    compiler.bundle("org.example.Hello", TEXT).compile();
+    String impl = compiler.read(IMPL);
+    List<Path> entries = entries();
+    assertFalse(entries.isEmpty());
+    for (Path entry : entries) {
+      // a truncated entry and one that was changed behind the cache's back
+      byte[] bytes = Files.readAllBytes(entry);
+      Files.write(entry, new byte[] {bytes[0], bytes[1]});
+    }
+    TestCompiler.Result damaged = compiler.compile();
+    assertEquals(0, damaged.getCounter("resources.cacheHits"));
+    assertEquals(impl, compiler.read(IMPL));
+
+    for (Path entry : entries()) {
+      byte[] bytes = Files.readAllBytes(entry);
+      bytes[bytes.length - 2] ^= 1;
+      Files.write(entry, bytes);
+    }
+    TestCompiler.Result changed = compiler.compile();
+    assertEquals(0, changed.getCounter("resources.cacheHits"));
+    assertEquals(impl, compiler.read(IMPL));
+
+    // both were replaced by intact entries
+    assertEquals(1, compiler.compile().getCounter("resources.cacheHits"));
+  }
+
+  private List<Path> entries() throws IOException {
+    try (Stream<Path> files = Files.walk(compiler.getCache())) {
+      return files.filter(Files::isRegularFile).collect(Collectors.toList());
+    }
+  }
+
+  private static byte[] fixture(String name) throws IOException, URISyntaxException {
+    return Files.readAllBytes(Paths.get(ResourceCacheTest.class.getResource(name).toURI()));
+  }
+}
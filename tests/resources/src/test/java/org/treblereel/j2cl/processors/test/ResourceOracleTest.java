@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.tools.StandardLocation;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.treblereel.j2cl.processors.annotations.GWT3Resource;
+
+/**
+ * Tests for the lookups of the resource oracle, which indexes the processor class loader, remembers
+ * lookups in the input locations and looks the output locations up again every time.
+ */
+public class ResourceOracleTest {
+
+  /** The first source is missing until {@link LateResources} writes it to the class output. */
+  private static final String TEXT = "@Source({\"late.txt\", \"early.txt\"}) TextResource text();";
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private TestCompiler compiler;
+
+  @Before
+  public void setUp() throws IOException {
+    compiler =
+        new TestCompiler(folder.newFolder().toPath())
+            .option("-Agwt3.cache=false")
+            .resource("org/example/early.txt", "Early");
+  }
+
+  @Test
+  public void testResourceAddedBetweenRounds() throws IOException {
+    TestCompiler.Result result =
+        compiler.bundle("org.example.Early", TEXT).processor(new LateResources()).compile();
+
+    assertTrue(result.toString(), result.isSuccess());
+    // the miss of the first round isn't remembered for the class output
+    assertTrue(compiler.read("org/example/EarlyImpl.java").contains("\"Early\""));
+    assertTrue(compiler.read("org/example/LateImpl.java").contains("\"Late\""));
+    // the sources are remembered, misses included
+    assertTrue(compiler.read("org/example/OtherImpl.java").contains("\"Early\""));
+  }
+
+  @Test
+  public void testClassLoaderComesFirst() throws IOException {
+    // the fixture jar is on the class path of the tests, so the processor sees it too
+    TestCompiler.Result result =
+        compiler
+            .resource("jarfixture/large.txt", "from the sources")
+            .bundle("org.example.Hello", "@Source(\"/jarfixture/large.txt\") TextResource text();")
+            .compile();
+
+    assertTrue(result.toString(), result.isSuccess());
+    String impl = compiler.read("org/example/HelloImpl.java");
+    assertTrue(impl.contains("049999 \\\"quoted\\\""));
+    assertFalse(impl.contains("from the sources"));
+  }
+
+  /**
+   * Writes {@code org/example/late.txt} to the class output in the first round, along with bundles
+   * processed in the next one.
+   */
+  private static final class LateResources extends AbstractProcessor {
+
+    private boolean done;
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+      return Set.of(GWT3Resource.class.getCanonicalName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+      return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+      if (done || annotations.isEmpty()) {
+        return false;
+      }
+      done = true;
+      try {
+        try (Writer out =
+            processingEnv
+                .getFiler()
+                .createResource(StandardLocation.CLASS_OUTPUT, "org.example", "late.txt")
+                .openWriter()) {
+          out.write("Late");
+        }
+        bundle("Late", TEXT);
+        bundle("Other", "@Source({\"missing.txt\", \"early.txt\"}) TextResource text();");
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return false;
+    }
+
+    private void bundle(String name, String member) throws IOException {
+      try (Writer out =
+          processingEnv.getFiler().createSourceFile("org.example." + name).openWriter()) {
+        out.write("package org.example;\n\n");
+        out.write("import org.treblereel.j2cl.processors.annotations.GWT3Resource;\n");
+        out.write("import org.treblereel.j2cl.processors.common.resources.*;\n\n");
+        out.write("@GWT3Resource\npublic interface " + name + " extends ClientBundle {\n");
+        out.write("  " + member + "\n}\n");
+      }
+    }
+  }
+}
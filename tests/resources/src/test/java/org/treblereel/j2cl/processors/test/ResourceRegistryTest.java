@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import org.junit.Test;
+import org.treblereel.j2cl.processors.annotations.GWT3Resource;
+import org.treblereel.j2cl.processors.common.resources.ClientBundle;
+import org.treblereel.j2cl.processors.common.resources.DataResource;
+import org.treblereel.j2cl.processors.common.resources.ResourceRegistry;
+import org.treblereel.j2cl.processors.common.resources.TextResource;
+
+public class ResourceRegistryTest {
+
+  private static final ResourceRegistryTest_LookupResourcesImpl impl =
+      ResourceRegistryTest_LookupResourcesImpl.INSTANCE;
+
+  @GWT3Resource
+  interface LookupResources extends ClientBundle {
+
+    @Source("small.txt")
+    TextResource small();
+
+    @Source("bigtextresource.txt")
+    TextResource big();
+
+    @Source("fourZeros.dat")
+    DataResource fourZeros();
+  }
+
+  @GWT3Resource
+  interface UnregisteredResources extends ClientBundle {
+
+    @Source("small.txt")
+    TextResource small();
+  }
+
+  @Test
+  public void testGetResourceIsLazy() throws ReflectiveOperationException {
+    assertSame(impl.fourZeros(), impl.getResource("fourZeros"));
+    // looking a resource up doesn't create the others
+    Field big = ResourceRegistryTest_LookupResourcesImpl.class.getDeclaredField("big");
+    big.setAccessible(true);
+    assertNull(big.get(null));
+
+    assertSame(impl.big(), impl.getResource("big"));
+    assertNotNull(big.get(null));
+  }
+
+  @Test
+  public void testUnknownResource() {
+    assertNull(impl.getResource("missing"));
+    assertNull(impl.getResource(null));
+  }
+
+  @Test
+  public void testResourceNames() {
+    assertArrayEquals(new String[] {"small", "big", "fourZeros"}, impl.getResourceNames());
+  }
+
+  @Test
+  public void testRegistry() {
+    ResourceRegistryTest_LookupResourcesImpl.register();
+    String bundle = LookupResources.class.getCanonicalName();
+    assertTrue(ResourceRegistry.getBundles().contains(bundle));
+    assertArrayEquals(impl.getResourceNames(), ResourceRegistry.getResourceNames(bundle));
+    assertSame(impl.small(), ResourceRegistry.getResource(bundle, "small"));
+    assertEquals("small", ResourceRegistry.getResource(bundle, "small").getName());
+    assertNull(ResourceRegistry.getResource(bundle, "missing"));
+    assertNull(ResourceRegistry.getResource("org.example.Missing", "small"));
+    assertEquals(0, ResourceRegistry.getResourceNames("org.example.Missing").length);
+  }
+
+  @Test
+  public void testRegistrationIsOptIn() {
+    // loading the implementation doesn't register it
+    assertEquals(
+        "small", ResourceRegistryTest_UnregisteredResourcesImpl.INSTANCE.small().getName());
+    assertFalse(
+        ResourceRegistry.getBundles().contains(UnregisteredResources.class.getCanonicalName()));
+
+    ResourceRegistryTest_UnregisteredResourcesImpl.register();
+    assertSame(
+        ResourceRegistryTest_UnregisteredResourcesImpl.INSTANCE.small(),
+        ResourceRegistry.getResource(UnregisteredResources.class.getCanonicalName(), "small"));
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.junit.Test;
+import org.treblereel.j2cl.processors.annotations.GWT3Resource;
+import org.treblereel.j2cl.processors.common.resources.ClientBundle;
+import org.treblereel.j2cl.processors.common.resources.DataResource;
+import org.treblereel.j2cl.processors.common.resources.DataResource.MimeType;
+import org.treblereel.j2cl.processors.common.resources.ImageResource;
+import org.treblereel.j2cl.processors.common.resources.ImageResource.ImageOptions;
+import org.treblereel.j2cl.processors.common.resources.TextResource;
+
+/** Tests for identical resources of different bundles, which share one generated value. */
+public class SharedResourceTest {
+
+  private static final Pattern HOLDER = Pattern.compile("\\w+_SharedResource_[0-9a-f]{16}\\.class");
+
+  private static final SharedResourceTest_FirstResourcesImpl first =
+      SharedResourceTest_FirstResourcesImpl.INSTANCE;
+
+  private static final SharedResourceTest_SecondResourcesImpl second =
+      SharedResourceTest_SecondResourcesImpl.INSTANCE;
+
+  @GWT3Resource
+  interface FirstResources extends ClientBundle {
+
+    @Source("largeLossless.png")
+    ImageResource logo();
+
+    @Source("largeLossless.png")
+    @ImageOptions(width = 32)
+    ImageResource smallLogo();
+
+    @Source("largeLossless.png")
+    DataResource logoData();
+
+    @Source("bigtextresource.txt")
+    TextResource text();
+
+    @Source("bigtextresource.txt")
+    @MimeType("application/x-single-use")
+    DataResource singleUse();
+
+    @Source("small.txt")
+    TextResource tiny();
+  }
+
+  @GWT3Resource
+  interface SecondResources extends ClientBundle {
+
+    @Source("largeLossless-dup.png")
+    ImageResource logo();
+
+    @Source("largeLossless-dup.png")
+    @ImageOptions(width = 32)
+    ImageResource smallLogo();
+
+    @Source("largeLossless-dup.png")
+    DataResource logoData();
+
+    @Source("bigtextresource.txt")
+    TextResource text();
+
+    @Source("small.txt")
+    TextResource tiny();
+  }
+
+  @Test
+  public void testIdenticalImages() {
+    assertTrue(first.logo().getSrc().startsWith("data:image/png;base64,"));
+    assertEquals(first.logo().getSrc(), second.logo().getSrc());
+    assertEquals(first.logo().getWidth(), second.logo().getWidth());
+  }
+
+  @Test
+  public void testIdenticalScaledImages() {
+    assertEquals(first.smallLogo().getSrc(), second.smallLogo().getSrc());
+    assertEquals(32, second.smallLogo().getWidth());
+    assertNotEquals(first.logo().getSrc(), first.smallLogo().getSrc());
+  }
+
+  @Test
+  public void testIdenticalData() {
+    assertTrue(first.logoData().asString().startsWith("data:image/png;base64,"));
+    assertEquals(first.logoData().asString(), second.logoData().asString());
+  }
+
+  @Test
+  public void testIdenticalText() {
+    assertEquals(first.text().getText(), second.text().getText());
+    assertEquals("text", second.text().getName());
+  }
+
+  @Test
+  public void testSharedValueHasOneHolder() throws Exception {
+    assertEquals(1, holdersOf(first.logo().getSrc()).size());
+    assertEquals(1, holdersOf(first.text().getText()).size());
+  }
+
+  @Test
+  public void testSingleUseValueHasNoHolder() throws Exception {
+    assertTrue(first.singleUse().asString().startsWith("data:application/x-single-use;base64,"));
+    assertTrue(holdersOf(first.singleUse().asString()).isEmpty());
+  }
+
+  @Test
+  public void testSmallValueHasNoHolder() throws Exception {
+    assertEquals(first.tiny().getText(), second.tiny().getText());
+    assertTrue(holdersOf(first.tiny().getText()).isEmpty());
+  }
+
+  /** The holder classes generated into the package of the bundles that return the value. */
+  private static List<String> holdersOf(String value) throws Exception {
+    List<String> holders = new ArrayList<>();
+    for (String name : holders()) {
+      Method method = Class.forName(name).getMethod("value");
+      if (value.equals(method.invoke(null))) {
+        holders.add(name);
+      }
+    }
+    return holders;
+  }
+
+  private static List<String> holders() throws URISyntaxException {
+    File folder = new File(SharedResourceTest.class.getResource("").toURI());
+    List<String> holders = new ArrayList<>();
+    for (String file : folder.list()) {
+      if (HOLDER.matcher(file).matches()) {
+        holders.add(
+            SharedResourceTest.class.getPackage().getName()
+                + "."
+                + file.substring(0, file.length() - ".class".length()));
+      }
+    }
+    assertFalse(folder.toString(), holders.isEmpty());
+    return holders;
+  }
+}
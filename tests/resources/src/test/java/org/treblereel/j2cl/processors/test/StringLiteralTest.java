@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.treblereel.j2cl.processors.common.resources.TextResource;
+
+/**
+ * Tests for the text of the resources, written as string literals of at most 16383 chars each and
+ * streamed from their source.
+ */
+public class StringLiteralTest {
+
+  private static final String IMPL = "org/example/HelloImpl.java";
+
+  private static final int MAX_STRING_CHUNK = 16383;
+
+  private static final Pattern APPEND = Pattern.compile("\\.append\\(\"");
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private TestCompiler compiler;
+
+  @Before
+  public void setUp() throws IOException {
+    compiler = new TestCompiler(folder.newFolder().toPath()).option("-Agwt3.cache=false").classes();
+  }
+
+  @Test
+  public void testLiteralUpToChunkSize() throws Exception {
+    String content = "x".repeat(MAX_STRING_CHUNK);
+
+    assertEquals(content, text(content));
+    assertFalse(compiler.read(IMPL).contains("new StringBuilder()"));
+  }
+
+  @Test
+  public void testChunksAboveChunkSize() throws Exception {
+    String content = "x".repeat(MAX_STRING_CHUNK + 1);
+
+    assertEquals(content, text(content));
+    assertTrue(compiler.read(IMPL).contains("new StringBuilder()"));
+    assertEquals(2, appends(compiler.read(IMPL)));
+  }
+
+  @Test
+  public void testEscapesAcrossChunks() throws Exception {
+    // a quote, a backslash, a line break and a surrogate pair, each split by a chunk boundary
+    StringBuilder content = new StringBuilder();
+    for (String escaped : new String[] {"\"\"", "\\\\", "\r\n", "😀"}) {
+      content.append("x".repeat(MAX_STRING_CHUNK - content.length() % MAX_STRING_CHUNK - 1));
+      content.append(escaped);
+    }
+
+    assertEquals(content.toString(), text(content.toString()));
+    assertEquals(5, appends(compiler.read(IMPL)));
+  }
+
+  @Test
+  public void testJarResourceIsReadCompletely() throws Exception {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 50000; i++) {
+      content.append(String.format("%06d \"quoted\" \\ tab\t é €\n", i));
+    }
+    compiler
+        .classPath(fixture())
+        .bundle("org.example.Hello", "@Source(\"/jarfixture/large.txt\") TextResource text();");
+
+    assertTrue(compiler.compile().isSuccess());
+    assertEquals(content.toString(), load().getText());
+    assertEquals(
+        (content.length() + MAX_STRING_CHUNK - 1) / MAX_STRING_CHUNK, appends(compiler.read(IMPL)));
+  }
+
+  private String text(String content) throws Exception {
+    compiler
+        .resource("org/example/hello.txt", content)
+        .bundle("org.example.Hello", "@Source(\"hello.txt\") TextResource text();");
+    assertTrue(compiler.compile().isSuccess());
+    return load().getText();
+  }
+
+  private TextResource load() throws Exception {
+    Class<?> impl = compiler.getClassLoader().loadClass("org.example.HelloImpl");
+    Object bundle = impl.getField("INSTANCE").get(null);
+    return (TextResource) impl.getMethod("text").invoke(bundle);
+  }
+
+  private static int appends(String source) {
+    int count = 0;
+    for (Matcher matcher = APPEND.matcher(source); matcher.find(); ) {
+      count++;
+    }
+    return count;
+  }
+
+  /** The jar of the fixtures, its entries have to be read through a {@code jar:} url. */
+  private static Path fixture() throws Exception {
+    return Paths.get(
+            StringLiteralTest.class
+                .getResource("/maven-repository/org/treblereel/test/resources-fixture/1.0/")
+                .toURI())
+        .resolve("resources-fixture-1.0.jar");
+  }
+}
@@ -0,0 +1,460 @@
+/*
+ * Copyright © 2023 treblereel
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.treblereel.j2cl.processors.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import javax.annotation.processing.Completion;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Processor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.treblereel.j2cl.processors.GWT3Processor;
+import org.treblereel.j2cl.processors.annotations.GWT3Resource;
+import org.treblereel.j2cl.processors.common.resources.ClientBundle;
+
+/**
+ * Runs {@link GWT3Processor} on sources written to a directory, recording every file it creates
+ * through the {@link Filer} along with its originating elements. Only annotation processing runs,
+ * unless {@link #classes} asks for the generated sources to be compiled too. As in a real build,
+ * the resource cache is on and kept next to the class output, so compiling again reuses it.
+ */
+final class TestCompiler {
+
+  private final Path dir;
+  private final Path sources;
+  private final Path output;
+  private final List<String> options = new ArrayList<>();
+  private final List<Path> files = new ArrayList<>();
+
+  /** Templates that replace those of the processor, null to use them as they are. */
+  private Path templates;
+
+  private final List<Path> classPath = new ArrayList<>();
+
+  /** Processors that run after {@link GWT3Processor}, e.g. to add files between rounds. */
+  private final List<Processor> processors = new ArrayList<>();
+
+  /** Whether the generated sources are compiled too. */
+  private boolean classes;
+
+  TestCompiler(Path dir) throws IOException {
+    this.dir = dir;
+    this.sources = Files.createDirectories(dir.resolve("src"));
+    this.output = Files.createDirectories(dir.resolve("out"));
+  }
+
+  /** Adds a processor option, e.g. {@code -Agwt3.maven.offline=true}. */
+  TestCompiler option(String option) {
+    options.add(option);
+    return this;
+  }
+
+  /** Adds a jar or a folder to the class path, where resources are looked up too. */
+  TestCompiler classPath(Path path) {
+    classPath.add(path);
+    return this;
+  }
+
+  /** Adds a processor that runs after {@link GWT3Processor} in every round. */
+  TestCompiler processor(Processor processor) {
+    processors.add(processor);
+    return this;
+  }
+
+  /**
+   * Compiles the sources and the generated ones, so the generated classes can be loaded with {@link
+   * #getClassLoader}.
+   */
+  TestCompiler classes() {
+    classes = true;
+    return this;
+  }
+
+  /** Adds a resource to the source path. */
+  TestCompiler resource(String path, String content) throws IOException {
+    write(path, content);
+    return this;
+  }
+
+  /** Adds a binary resource to the source path. */
+  TestCompiler resource(String path, byte[] content) throws IOException {
+    Path file = sources.resolve(path);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content);
+    return this;
+  }
+
+  /**
+   * Replaces a template of the processor, e.g. {@code textresource.ftlh}. The processor is then
+   * loaded by its own class loader, which finds the replaced templates first.
+   */
+  TestCompiler template(String name, String content) throws IOException {
+    if (templates == null) {
+      templates = Files.createDirectories(dir.resolve("templates"));
+    }
+    Path file = templates.resolve("templates/resources").resolve(name);
+    Files.createDirectories(file.getParent());
+    Files.writeString(file, content);
+    return this;
+  }
+
+  TestCompiler source(String className, String content) throws IOException {
+    Path file = write(className.replace('.', '/') + ".java", content);
+    if (!files.contains(file)) {
+      files.add(file);
+    }
+    return this;
+  }
+
+  /**
+   * Adds a {@code @GWT3Resource} bundle with the members, e.g. {@code @Source("hello.txt")
+   * TextResource hello();}. Every resource type is imported.
+   */
+  TestCompiler bundle(String className, String... members) throws IOException {
+    return bundle(className, Collections.emptyList(), members);
+  }
+
+  /** Adds a {@code @GWT3Resource} bundle that has other annotations too. */
+  TestCompiler bundle(String className, List<String> annotations, String... members)
+      throws IOException {
+    int dot = className.lastIndexOf('.');
+    StringBuilder content = new StringBuilder();
+    if (dot != -1) {
+      content.append("package ").append(className, 0, dot).append(";\n\n");
+    }
+    content.append("import org.treblereel.j2cl.processors.annotations.GWT3Resource;\n");
+    content.append("import org.treblereel.j2cl.processors.common.resources.*;\n\n");
+    content.append("@GWT3Resource\n");
+    for (String annotation : annotations) {
+      content.append(annotation).append('\n');
+    }
+    content.append("public interface ").append(className.substring(dot + 1));
+    content.append(" extends ClientBundle {\n");
+    for (String member : members) {
+      content.append("  ").append(member).append('\n');
+    }
+    content.append("}\n");
+    return source(className, content.toString());
+  }
+
+  Path getOutput() {
+    return output;
+  }
+
+  /** Where the processor keeps its cache by default, next to the class output. */
+  Path getCache() {
+    return dir.resolve("gwt3-cache");
+  }
+
+  /** Loads the classes compiled by {@link #classes}, and the classes of the tests. */
+  ClassLoader getClassLoader() throws IOException {
+    return new URLClassLoader(new URL[] {output.toUri().toURL()}, getClass().getClassLoader());
+  }
+
+  /** Reads a generated source or resource. */
+  String read(String path) throws IOException {
+    return Files.readString(output.resolve(path));
+  }
+
+  Result compile() throws IOException {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    Result result = new Result(diagnostics);
+    try (URLClassLoader loader = templates != null ? templateLoader() : null;
+        StandardJavaFileManager fileManager =
+            compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+      List<String> arguments = new ArrayList<>(options);
+      if (!classes) {
+        arguments.add("-proc:only");
+      }
+      arguments.addAll(
+          Arrays.asList(
+              "-sourcepath",
+              sources.toString(),
+              "-s",
+              output.toString(),
+              "-d",
+              output.toString(),
+              "-classpath",
+              classPath()));
+      JavaCompiler.CompilationTask task =
+          compiler.getTask(
+              null,
+              fileManager,
+              diagnostics,
+              arguments,
+              null,
+              fileManager.getJavaFileObjectsFromPaths(files));
+      Processor processor =
+          loader != null
+              ? (Processor)
+                  loader.loadClass(GWT3Processor.class.getName()).getConstructor().newInstance()
+              : new GWT3Processor();
+      List<Processor> all = new ArrayList<>();
+      all.add(new RecordingProcessor(processor, result.created));
+      all.addAll(processors);
+      task.setProcessors(all);
+      result.success = task.call();
+      if (result.created.containsKey(Result.STATS_FILE)) {
+        result.stats = Files.readString(output.resolve(Result.STATS_FILE));
+      }
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(e);
+    }
+    return result;
+  }
+
+  private URLClassLoader templateLoader() throws IOException {
+    try {
+      URL processor = GWT3Processor.class.getProtectionDomain().getCodeSource().getLocation();
+      return new URLClassLoader(
+          new URL[] {templates.toUri().toURL(), processor}, ClassLoader.getPlatformClassLoader());
+    } catch (MalformedURLException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private Path write(String path, String content) throws IOException {
+    Path file = sources.resolve(path);
+    Files.createDirectories(file.getParent());
+    return Files.writeString(file, content);
+  }
+
+  /** The annotations, the processor with the resource types, and the added paths. */
+  private String classPath() {
+    List<String> paths = new ArrayList<>();
+    paths.add(classPath(GWT3Resource.class, ClientBundle.class));
+    classPath.forEach(path -> paths.add(path.toString()));
+    return String.join(File.pathSeparator, paths);
+  }
+
+  private static String classPath(Class<?>... classes) {
+    return Arrays.stream(classes)
+        .map(
+            type -> {
+              try {
+                return Paths.get(type.getProtectionDomain().getCodeSource().getLocation().toURI())
+                    .toString();
+              } catch (URISyntaxException e) {
+                throw new IllegalStateException(e);
+              }
+            })
+        .collect(Collectors.joining(File.pathSeparator));
+  }
+
+  static final class Result {
+
+    private static final String STATS_FILE = "META-INF/gwt3-processors/stats.json";
+
+    private final DiagnosticCollector<JavaFileObject> diagnostics;
+
+    /** Names of the created files and their originating elements, in creation order. */
+    private final Map<String, List<String>> created = new LinkedHashMap<>();
+
+    private boolean success;
+    private String stats;
+
+    private Result(DiagnosticCollector<JavaFileObject> diagnostics) {
+      this.diagnostics = diagnostics;
+    }
+
+    boolean isSuccess() {
+      return success;
+    }
+
+    Map<String, List<String>> getCreated() {
+      return created;
+    }
+
+    /** The originating elements of a created source file or resource. */
+    List<String> getOrigins(String name) {
+      return created.get(name);
+    }
+
+    /** The stats written with {@code -Agwt3.stats=true}, null if there are none. */
+    String getStats() {
+      return stats;
+    }
+
+    /** A counter of the stats, 0 if it wasn't counted. */
+    long getCounter(String name) {
+      if (stats == null) {
+        throw new AssertionError("No stats, -Agwt3.stats=true is missing");
+      }
+      Matcher matcher = Pattern.compile("\"" + Pattern.quote(name) + "\": (\\d+)").matcher(stats);
+      return matcher.find() ? Long.parseLong(matcher.group(1)) : 0;
+    }
+
+    List<String> getMessages(Diagnostic.Kind kind) {
+      return diagnostics.getDiagnostics().stream()
+          .filter(diagnostic -> diagnostic.getKind() == kind)
+          .map(diagnostic -> diagnostic.getMessage(null))
+          .collect(Collectors.toList());
+    }
+
+    @Override
+    public String toString() {
+      return diagnostics.getDiagnostics().toString();
+    }
+  }
+
+  /** Hands the processor an environment whose Filer records what it creates. */
+  private static final class RecordingProcessor implements Processor {
+
+    private final Processor delegate;
+    private final Map<String, List<String>> created;
+
+    private RecordingProcessor(Processor delegate, Map<String, List<String>> created) {
+      this.delegate = delegate;
+      this.created = created;
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+      return delegate.getSupportedOptions();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+      return delegate.getSupportedAnnotationTypes();
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+      return delegate.getSupportedSourceVersion();
+    }
+
+    @Override
+    public void init(ProcessingEnvironment processingEnv) {
+      Filer filer = new RecordingFiler(processingEnv.getFiler(), created);
+      delegate.init(
+          (ProcessingEnvironment)
+              Proxy.newProxyInstance(
+                  ProcessingEnvironment.class.getClassLoader(),
+                  new Class<?>[] {ProcessingEnvironment.class},
+                  (proxy, method, args) -> {
+                    if (method.getName().equals("getFiler")) {
+                      return filer;
+                    }
+                    try {
+                      return method.invoke(processingEnv, args);
+                    } catch (InvocationTargetException e) {
+                      throw e.getCause();
+                    }
+                  }));
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+      return delegate.process(annotations, roundEnv);
+    }
+
+    @Override
+    public Iterable<? extends Completion> getCompletions(
+        Element element, AnnotationMirror annotation, ExecutableElement member, String userText) {
+      return delegate.getCompletions(element, annotation, member, userText);
+    }
+  }
+
+  private static final class RecordingFiler implements Filer {
+
+    private final Filer delegate;
+    private final Map<String, List<String>> created;
+
+    private RecordingFiler(Filer delegate, Map<String, List<String>> created) {
+      this.delegate = delegate;
+      this.created = created;
+    }
+
+    @Override
+    public JavaFileObject createSourceFile(CharSequence name, Element... originatingElements)
+        throws IOException {
+      record(name.toString(), originatingElements);
+      return delegate.createSourceFile(name, originatingElements);
+    }
+
+    @Override
+    public JavaFileObject createClassFile(CharSequence name, Element... originatingElements)
+        throws IOException {
+      record(name.toString(), originatingElements);
+      return delegate.createClassFile(name, originatingElements);
+    }
+
+    @Override
+    public FileObject createResource(
+        JavaFileManager.Location location,
+        CharSequence moduleAndPkg,
+        CharSequence relativeName,
+        Element... originatingElements)
+        throws IOException {
+      String pkg = moduleAndPkg.toString().replace('.', '/');
+      record(
+          pkg.isEmpty() ? relativeName.toString() : pkg + "/" + relativeName, originatingElements);
+      return delegate.createResource(location, moduleAndPkg, relativeName, originatingElements);
+    }
+
+    @Override
+    public FileObject getResource(
+        JavaFileManager.Location location, CharSequence moduleAndPkg, CharSequence relativeName)
+        throws IOException {
+      return delegate.getResource(location, moduleAndPkg, relativeName);
+    }
+
+    private synchronized void record(String name, Element... originatingElements) {
+      created.put(
+          name,
+          Arrays.stream(originatingElements)
+              .map(element -> ((TypeElement) element).getQualifiedName().toString())
+              .sorted()
+              .collect(Collectors.toList()));
+    }
+  }
+}
@@ -61,6 +61,30 @@ public class TextResourcesTest {
     assertEquals(content, TextTestResourceImpl.INSTANCE.getFromResourceFolder().getText());
   }
 
+  @Test
+  public void testMinified() {
+    String content = readFileAsString("original_support.js");
+    String minified = TextTestResourceImpl.INSTANCE.minified().getText();
+    Assert.assertTrue(minified.length() < content.length() / 2);
+    Assert.assertTrue(minified.startsWith("define([\"../core\","));
+    // comments are dropped and local functions renamed
+    Assert.assertFalse(minified.contains("Executing both pixelPosition"));
+    Assert.assertFalse(minified.contains("computeStyleTests"));
+    // no strict mode is forced on the script
+    Assert.assertFalse(minified.startsWith("'use strict'"));
+  }
+
+  @Test
+  public void testMinifiedWhitespaceOnly() {
+    String content = readFileAsString("original_support.js");
+    String minified = TextTestResourceImpl.INSTANCE.minifiedWhitespaceOnly().getText();
+    Assert.assertTrue(minified.length() < content.length());
+    Assert.assertFalse(minified.contains("Executing both pixelPosition"));
+    Assert.assertTrue(minified.contains("function computeStyleTests()"));
+    Assert.assertTrue(
+        minified.length() > TextTestResourceImpl.INSTANCE.minified().getText().length());
+  }
+
   @Test
   public void testNoSource() {
     String content = readFileAsString("getNoSource.txt");
@@ -103,6 +127,25 @@ public class TextResourcesTest {
     assertEquals(content, TextTestResourceImpl.INSTANCE.externalResourceWebJarGZIP().getText());
   }
 
+  @Test
+  public void testExternalResourceWebJarGZIPInPlace() {
+    String content = readFileAsString("bootstrap.min.js.back");
+    assertEquals(
+        content, TextTestResourceImpl.INSTANCE.externalResourceWebJarGZIPInPlace().getText());
+  }
+
+  @Test
+  public void testExternalResourceIsNotCopied() {
+    Assert.assertNull(
+        getClass().getResource("/org/uberfire/client/views/static/css/patternfly.css"));
+  }
+
+  @Test
+  public void testExternalResourceWebJarGlob() {
+    String content = readFileAsString("original_support.js");
+    assertEquals(content, TextTestResourceImpl.INSTANCE.externalResourceWebJarGlob().getText());
+  }
+
   private void assertEquals(String str1, String str2) {
     Assert.assertEquals(normalize(str1), normalize(str2));
   }
@@ -21,6 +21,12 @@ import org.treblereel.j2cl.processors.common.resources.ClientBundle;
 import org.treblereel.j2cl.processors.common.resources.TextResource;
 
 @GWT3Resource
+@ClientBundle.MavenArtifactSource(
+    group = "org.webjars.npm",
+    artifact = "jquery",
+    version = "3.7.1",
+    path = "META-INF/resources/webjars/jquery/3.7.1/src/css/**",
+    copyTo = "org/test/jquery/css")
 interface TextTestResource extends ClientBundle {
 
   @Source("small.txt")
@@ -32,6 +38,14 @@ interface TextTestResource extends ClientBundle {
   @Source("test.js")
   TextResource getFromResourceFolder();
 
+  @Source("original_support.js")
+  @TextResource.Minify
+  TextResource minified();
+
+  @Source("original_support.js")
+  @TextResource.Minify(TextResource.Minify.Level.WHITESPACE_ONLY)
+  TextResource minifiedWhitespaceOnly();
+
   @Source("/io/qwerty/test.txt")
   TextResource getFQDNPath();
 
@@ -86,4 +100,15 @@ interface TextTestResource extends ClientBundle {
       copyTo = "org/test/bootstrap.min.js.back",
       unzip = true)
   TextResource externalResourceWebJarGZIP();
+
+  @MavenArtifactSource(
+      group = "org.webjars",
+      artifact = "bootstrap",
+      version = "3.4.1",
+      path = "META-INF/resources/webjars/bootstrap/3.4.1/js/bootstrap.min.js.gz",
+      unzip = true)
+  TextResource externalResourceWebJarGZIPInPlace();
+
+  @Source("/org/test/jquery/css/support.js")
+  TextResource externalResourceWebJarGlob();
 }
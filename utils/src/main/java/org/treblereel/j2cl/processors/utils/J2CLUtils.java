@@ -33,32 +33,42 @@ import jsinterop.annotations.JsType;
  */
 public class J2CLUtils {
 
-  private final HackedJavaEnvironment javaEnvironment;
+  private final ProcessingEnvironment processingEnv;
+
+  private HackedJavaEnvironment javaEnvironment;
 
   public J2CLUtils(ProcessingEnvironment processingEnv) {
-    javaEnvironment = new HackedJavaEnvironment(processingEnv);
+    this.processingEnv = processingEnv;
+  }
+
+  /** Well-known types are initialized on first use, most rounds never need them. */
+  private HackedJavaEnvironment javaEnvironment() {
+    if (javaEnvironment == null) {
+      javaEnvironment = new HackedJavaEnvironment(processingEnv);
+    }
+    return javaEnvironment;
   }
 
   public MemberDescriptor getDefaultConstructor(TypeElement parent) {
-    return javaEnvironment.getDefaultConstructor(parent);
+    return javaEnvironment().getDefaultConstructor(parent);
   }
 
   public DeclaredTypeDescriptor createDeclaredTypeDescriptor(DeclaredType declaredType) {
-    return javaEnvironment.createDeclaredTypeDescriptor(declaredType);
+    return javaEnvironment().createDeclaredTypeDescriptor(declaredType);
   }
 
   public MethodDescriptor createDeclarationMethodDescriptor(ExecutableElement method) {
-    return javaEnvironment.createDeclarationMethodDescriptor(method);
+    return javaEnvironment().createDeclarationMethodDescriptor(method);
   }
 
   public MethodDescriptor createDeclarationMethodDescriptor(
       ExecutableElement methodElement, DeclaredTypeDescriptor enclosingTypeDescriptor) {
-    return javaEnvironment.createDeclarationMethodDescriptor(
-        methodElement, enclosingTypeDescriptor);
+    return javaEnvironment()
+        .createDeclarationMethodDescriptor(methodElement, enclosingTypeDescriptor);
   }
 
   public FieldDescriptor createFieldDescriptor(VariableElement variableElement) {
-    return javaEnvironment.createFieldDescriptor(variableElement);
+    return javaEnvironment().createFieldDescriptor(variableElement);
   }
 
   public TypeDescriptor createTypeDescriptor(TypeElement element) {
@@ -66,7 +76,7 @@ public class J2CLUtils {
   }
 
   public TypeDescriptor createTypeDescriptor(TypeMirror type) {
-    return javaEnvironment.createTypeDescriptor(type);
+    return javaEnvironment().createTypeDescriptor(type);
   }
 
   public String getMethodMangledName(ExecutableElement method) {
@@ -80,7 +90,7 @@ public class J2CLUtils {
     if (isJsType(MoreElements.asType(method.getEnclosingElement()))) {
       return method.getSimpleName().toString();
     }
-    return javaEnvironment.createDeclarationMethodDescriptor(method).getMangledName();
+    return javaEnvironment().createDeclarationMethodDescriptor(method).getMangledName();
   }
 
   public String getVariableMangledName(VariableElement variableElement) {
@@ -90,7 +100,7 @@ public class J2CLUtils {
           ? variableElement.getSimpleName().toString()
           : jsProperty.name();
     }
-    return javaEnvironment.createFieldDescriptor(variableElement).getMangledName();
+    return javaEnvironment().createFieldDescriptor(variableElement).getMangledName();
   }
 
   public boolean isJsType(TypeElement element) {